@@ -97,7 +97,7 @@ public class DisplayGameboard {
 
         for (int col = 1; col <= 8; col++) {
             int currentPieceCol = printAsWhitePerspective ? col : (9 - col);
-            ChessPosition currentPos = new ChessPosition(row, currentPieceCol);
+            ChessPosition currentPos = ChessPosition.of(row, currentPieceCol);
 
             boolean isLightSquare = (row + currentPieceCol) % 2 != 0;
             boolean shouldHighlight = highlights != null && highlights.contains(currentPos);
@@ -30,11 +30,13 @@ public class ConnectionManager {
     public void broadcast(Integer gameID, ServerMessage message, String excludeAuthToken) throws IOException {
         var connections = gameConnections.get(gameID);
         if (connections != null) {
+            // serialized once, every client gets the same text
+            String json = gson.toJson(message);
             var removeList = new ArrayList<Connection>();
             for (var c : connections) {
                 if (c.session.isOpen()) {
                     if (!c.authToken.equals(excludeAuthToken)) {
-                        c.send(gson.toJson(message));
+                        c.send(json);
                     }
                 } else {
                     removeList.add(c);
@@ -5,6 +5,7 @@ import chess.ChessMove;
 import chess.InvalidMoveException;
 import chess.datamodel.AuthData;
 import chess.datamodel.GameData;
+import chess.pgn.San;
 import com.google.gson.Gson;
 import dataaccess.DataAccess;
 import io.javalin.websocket.WsConnectContext;
@@ -70,7 +71,7 @@ public class WebSocketHandler {
 
             // Send LOAD_GAME to root client
             connections.sendToClient(command.getGameID(), command.getAuthToken(),
-                    new LoadGameMessage(game.game()));
+                    new LoadGameMessage(game.game().snapshot()));
 
             // Determine if player or observer
             String username = auth.username();
@@ -135,6 +136,9 @@ public class WebSocketHandler {
                 return;
             }
 
+            // SAN depends on the position before the move, so it is worked out first
+            String san = game.isLegal(move) ? San.encode(game, move) : null;
+
             // Make the move
             game.makeMove(move);
 
@@ -149,30 +153,30 @@ public class WebSocketHandler {
             dataAccess.updateGame(command.getGameID(), updatedGame);
 
             // Broadcast LOAD_GAME to all clients in the game
-            LoadGameMessage loadGameMessage = new LoadGameMessage(game);
+            LoadGameMessage loadGameMessage = new LoadGameMessage(game.snapshot());
             connections.broadcast(command.getGameID(), loadGameMessage, null);
 
             // Send move notification to others (not to root)
-            String moveNotification = username + " made move: " + formatMove(move);
+            String moveNotification = username + " made move: " + formatMove(move, san);
             connections.broadcast(command.getGameID(),
                     new NotificationMessage(moveNotification), command.getAuthToken());
 
-            // Check for check, checkmate, or stalemate
+            // Check for check, checkmate, stalemate or a draw, all from one analysis
             ChessGame.TeamColor opponentColor = (currentTurn == ChessGame.TeamColor.WHITE) ?
                     ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
 
-            if (game.isInCheckmate(opponentColor)) {
-                String checkmateMsg = getPlayerName(gameData, opponentColor) + " is in checkmate. " +
+            String statusMsg = switch (game.status()) {
+                case CHECKMATE -> getPlayerName(gameData, opponentColor) + " is in checkmate. " +
                         username + " wins!";
-                NotificationMessage notification = new NotificationMessage(checkmateMsg);
-                connections.broadcast(command.getGameID(), notification, null);
-            } else if (game.isInStalemate(opponentColor)) {
-                String stalemateMsg = "Game ended in stalemate";
-                NotificationMessage notification = new NotificationMessage(stalemateMsg);
-                connections.broadcast(command.getGameID(), notification, null);
-            } else if (game.isInCheck(opponentColor)) {
-                String checkMsg = getPlayerName(gameData, opponentColor) + " is in check";
-                NotificationMessage notification = new NotificationMessage(checkMsg);
+                case STALEMATE -> "Game ended in stalemate";
+                case INSUFFICIENT_MATERIAL -> "Game ended in a draw by insufficient material";
+                case THREEFOLD_REPETITION -> "Game ended in a draw by threefold repetition";
+                case FIFTY_MOVE_RULE -> "Game ended in a draw by the fifty-move rule";
+                case CHECK -> getPlayerName(gameData, opponentColor) + " is in check";
+                case NORMAL -> null;
+            };
+            if (statusMsg != null) {
+                NotificationMessage notification = new NotificationMessage(statusMsg);
                 connections.broadcast(command.getGameID(), notification, null);
             }
 
@@ -281,9 +285,10 @@ public class WebSocketHandler {
         }
     }
 
-    private String formatMove(ChessMove move) {
-        return positionToString(move.getStartPosition()) + " to " +
+    private String formatMove(ChessMove move, String san) {
+        String squares = positionToString(move.getStartPosition()) + " to " +
                 positionToString(move.getEndPosition());
+        return san == null ? squares : san + " (" + squares + ")";
     }
 
     private String positionToString(chess.ChessPosition pos) {
@@ -1,62 +1,20 @@
 package chess;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-
 public class BishopMoveGenerator implements MoveCalculator {
 
-    // relative directions for moves (up right, up left, down right, down left)
-    private static final int[][] DIRECTIONS = {
-            {1,1},  // up right
-            {1,-1}, // up left
-            {-1,1}, // down right
-            {-1,-1} // down left
-    };
-
     @Override
-    public Collection<ChessMove> possibleMoves(ChessBoard board, ChessPosition from) {
-        Collection<ChessMove> moves = new ArrayList<>();
-
+    public int possibleMoves(ChessBoard board, int from, int[] moves, int count) {
         ChessPiece piece = board.getPiece(from);
+
         if (piece == null) {
-            return moves;
+            return count;
         }
 
-        ChessGame.TeamColor myTeam = piece.getTeamColor();
-
-        for (int[] dir : DIRECTIONS) {
-            int row = from.getRow() + dir[0];
-            int col = from.getColumn() + dir[1];
-
-            while (onTheBoard(row, col)) {
-                // check
-                ChessPosition to = new ChessPosition(row, col);
+        long friendly = board.getTeamBitboard(piece.getTeamColor());
 
-                ChessPiece target = board.getPiece(to);
+        // diagonal slides stop on the first piece, which is kept only if it can be captured
+        long targets = Bitboards.bishopAttacks(from, board.getOccupancy()) & ~friendly;
 
-                // if empty
-                if (target == null) {
-                    moves.add(new ChessMove(from, to, null));
-                } else {
-                    // square has a valid capture target
-                    if (target.getTeamColor() != myTeam) {
-                        moves.add(new ChessMove(from, to, null));
-                    }
-                    break; // stop sliding if friendly piece
-                }
-
-                // increment counters
-                row += dir[0];
-                col += dir[1];
-            }
-        }
-
-        return moves;
-    }
-
-    @Override
-    public boolean onTheBoard(int row, int col) {
-        return (row >= 1 && row <= 8 && col >= 1 && col <= 8);
+        return Bitboards.addMoves(from, targets, board.getOccupancy() & ~friendly, moves, count);
     }
 }
@@ -0,0 +1,249 @@
+package chess;
+
+/**
+ * Square numbering and bitboard helpers shared by the board, the game and the
+ * move generators.
+ * <p>
+ * Squares are numbered 0-63 starting at row 1, column 1 and running across each
+ * row, so {@code square = (row - 1) * 8 + (column - 1)}. Bit {@code n} of a
+ * bitboard is set when square {@code n} is part of the set.
+ */
+public final class Bitboards {
+
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long FILE_B = FILE_A << 1;
+    public static final long FILE_G = FILE_A << 6;
+    public static final long FILE_H = FILE_A << 7;
+
+    public static final long DARK_SQUARES = 0xAA55AA55AA55AA55L;
+    public static final long LIGHT_SQUARES = ~DARK_SQUARES;
+
+    public static final long RANK_1 = 0xFFL;
+    public static final long RANK_2 = RANK_1 << 8;
+    public static final long RANK_3 = RANK_1 << 16;
+    public static final long RANK_4 = RANK_1 << 24;
+    public static final long RANK_5 = RANK_1 << 32;
+    public static final long RANK_6 = RANK_1 << 40;
+    public static final long RANK_7 = RANK_1 << 48;
+    public static final long RANK_8 = RANK_1 << 56;
+
+    // relative directions for sliding pieces
+    static final int[][] ROOK_DIRECTIONS = {
+            {1,0},  // up
+            {-1,0}, // down
+            {0,1},  // right
+            {0,-1}  // left
+    };
+
+    static final int[][] BISHOP_DIRECTIONS = {
+            {1,1},  // up right
+            {1,-1}, // up left
+            {-1,1}, // down right
+            {-1,-1} // down left
+    };
+
+    // leaper attacks and pawn pushes from a single square, looked up instead of shifted
+    private static final long[] KNIGHT_ATTACKS = new long[64];
+    private static final long[] KING_ATTACKS = new long[64];
+    private static final long[] WHITE_PAWN_ATTACKS = new long[64];
+    private static final long[] BLACK_PAWN_ATTACKS = new long[64];
+    private static final long[] WHITE_PAWN_PUSHES = new long[64];
+    private static final long[] BLACK_PAWN_PUSHES = new long[64];
+    private static final long[] WHITE_PAWN_DOUBLE_PUSHES = new long[64];
+    private static final long[] BLACK_PAWN_DOUBLE_PUSHES = new long[64];
+
+    // squares strictly between two squares on a shared rank, file or diagonal, indexed a * 64 + b
+    private static final long[] BETWEEN = new long[64 * 64];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            long from = bit(square);
+            KNIGHT_ATTACKS[square] = knightAttacks(from);
+            KING_ATTACKS[square] = kingAttacks(from);
+            WHITE_PAWN_ATTACKS[square] = pawnAttacks(ChessGame.TeamColor.WHITE, from);
+            BLACK_PAWN_ATTACKS[square] = pawnAttacks(ChessGame.TeamColor.BLACK, from);
+            WHITE_PAWN_PUSHES[square] = from << 8;
+            BLACK_PAWN_PUSHES[square] = from >>> 8;
+            WHITE_PAWN_DOUBLE_PUSHES[square] = (from & RANK_2) << 16;
+            BLACK_PAWN_DOUBLE_PUSHES[square] = (from & RANK_7) >>> 16;
+        }
+
+        for (int a = 0; a < 64; a++) {
+            for (int b = 0; b < 64; b++) {
+                long target = bit(b);
+                for (int[][] directions : new int[][][] {ROOK_DIRECTIONS, BISHOP_DIRECTIONS}) {
+                    if ((OmnidirectionalMoves.rays(a, 0L, directions, 7) & target) != 0) {
+                        // walking from each end towards the other meets exactly in between
+                        BETWEEN[a * 64 + b] = OmnidirectionalMoves.rays(a, target, directions, 7)
+                                & OmnidirectionalMoves.rays(b, bit(a), directions, 7);
+                    }
+                }
+            }
+        }
+    }
+
+    private Bitboards() {}
+
+    /**
+     * @param row 1-8, 1 is White's back row
+     * @param col 1-8, 1 is the a-file
+     * @return square index of the position
+     */
+    public static int square(int row, int col) {
+        return ((row - 1) << 3) | (col - 1);
+    }
+
+    public static int square(ChessPosition pos) {
+        return square(pos.getRow(), pos.getColumn());
+    }
+
+    public static int row(int square) {
+        return (square >>> 3) + 1;
+    }
+
+    public static int column(int square) {
+        return (square & 7) + 1;
+    }
+
+    public static ChessPosition position(int square) {
+        return ChessPosition.ofSquare(square);
+    }
+
+    public static long bit(int square) {
+        return 1L << square;
+    }
+
+    /**
+     * @return index 0-11 of the bitboard holding pieces of this color and type
+     */
+    public static int pieceIndex(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return color.ordinal() * 6 + type.ordinal();
+    }
+
+    public static long knightAttacks(long knights) {
+        long l1 = (knights >>> 1) & ~FILE_H;
+        long l2 = (knights >>> 2) & ~(FILE_G | FILE_H);
+        long r1 = (knights << 1) & ~FILE_A;
+        long r2 = (knights << 2) & ~(FILE_A | FILE_B);
+        long h1 = l1 | r1;
+        long h2 = l2 | r2;
+        return (h1 << 16) | (h1 >>> 16) | (h2 << 8) | (h2 >>> 8);
+    }
+
+    public static long kingAttacks(long kings) {
+        long sideways = ((kings << 1) & ~FILE_A) | ((kings >>> 1) & ~FILE_H);
+        long row = kings | sideways;
+        return sideways | (row << 8) | (row >>> 8);
+    }
+
+    /**
+     * @return squares attacked diagonally by the given pawns, which is not the
+     * same as the squares they can move to
+     */
+    public static long pawnAttacks(ChessGame.TeamColor color, long pawns) {
+        if (color == ChessGame.TeamColor.WHITE) {
+            return ((pawns << 7) & ~FILE_H) | ((pawns << 9) & ~FILE_A);
+        }
+        return ((pawns >>> 9) & ~FILE_H) | ((pawns >>> 7) & ~FILE_A);
+    }
+
+    public static long knightAttacksFrom(int square) {
+        return KNIGHT_ATTACKS[square];
+    }
+
+    public static long kingAttacksFrom(int square) {
+        return KING_ATTACKS[square];
+    }
+
+    /**
+     * @return squares a pawn of the given color standing on the square attacks
+     */
+    public static long pawnAttacksFrom(ChessGame.TeamColor color, int square) {
+        return color == ChessGame.TeamColor.WHITE ? WHITE_PAWN_ATTACKS[square] : BLACK_PAWN_ATTACKS[square];
+    }
+
+    /**
+     * @return the square one step forward of a pawn, 0 from the last row
+     */
+    public static long pawnPushFrom(ChessGame.TeamColor color, int square) {
+        return color == ChessGame.TeamColor.WHITE ? WHITE_PAWN_PUSHES[square] : BLACK_PAWN_PUSHES[square];
+    }
+
+    /**
+     * @return the square two steps forward of a pawn on its starting row, otherwise 0
+     */
+    public static long pawnDoublePushFrom(ChessGame.TeamColor color, int square) {
+        return color == ChessGame.TeamColor.WHITE
+                ? WHITE_PAWN_DOUBLE_PUSHES[square] : BLACK_PAWN_DOUBLE_PUSHES[square];
+    }
+
+    /**
+     * @param square where the rook stands
+     * @param occupied every occupied square on the board
+     * @return squares the rook attacks, including the first blocker in each direction
+     */
+    public static long rookAttacks(int square, long occupied) {
+        return MagicBitboards.rookAttacks(square, occupied);
+    }
+
+    /**
+     * @param square where the bishop stands
+     * @param occupied every occupied square on the board
+     * @return squares the bishop attacks, including the first blocker in each direction
+     */
+    public static long bishopAttacks(int square, long occupied) {
+        return MagicBitboards.bishopAttacks(square, occupied);
+    }
+
+    /**
+     * @return squares strictly between two squares that share a rank, file or
+     * diagonal, or 0 if they share none of those or are neighbours
+     */
+    public static long between(int a, int b) {
+        return BETWEEN[a * 64 + b];
+    }
+
+    public static long queenAttacks(int square, long occupied) {
+        return rookAttacks(square, occupied) | bishopAttacks(square, occupied);
+    }
+
+    /**
+     * Squares a piece standing on the given square attacks, including squares
+     * occupied by its own team
+     *
+     * @param piece the attacking piece
+     * @param square where the piece stands
+     * @param occupied every occupied square on the board, used to stop sliders
+     * @return bitboard of attacked squares
+     */
+    public static long attacks(ChessPiece piece, int square, long occupied) {
+        return switch (piece.getPieceType()) {
+            case KING -> KING_ATTACKS[square];
+            case QUEEN -> queenAttacks(square, occupied);
+            case BISHOP -> bishopAttacks(square, occupied);
+            case KNIGHT -> KNIGHT_ATTACKS[square];
+            case ROOK -> rookAttacks(square, occupied);
+            case PAWN -> pawnAttacksFrom(piece.getTeamColor(), square);
+        };
+    }
+
+    /**
+     * Writes one non-promoting move per destination into a move buffer
+     *
+     * @param from starting square shared by all the moves
+     * @param targets destination squares
+     * @param enemies squares holding the other team's pieces, to flag captures
+     * @param moves buffer of {@link PackedMove} ints
+     * @param count number of moves already in the buffer
+     * @return number of moves in the buffer afterwards
+     */
+    static int addMoves(int from, long targets, long enemies, int[] moves, int count) {
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            int flags = (enemies & bit(to)) != 0 ? PackedMove.CAPTURE : PackedMove.NONE;
+            targets &= targets - 1;
+            moves[count++] = PackedMove.encode(from, to, null, flags);
+        }
+        return count;
+    }
+}
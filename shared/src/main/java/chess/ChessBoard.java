@@ -1,20 +1,51 @@
 package chess;
 
+import com.google.gson.annotations.JsonAdapter;
+
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 
 /**
  * A chessboard that can hold and rearrange chess pieces.
  * <p>
+ * The 8x8 array is the serialized form and answers {@link #getPiece} directly.
+ * Alongside it the board keeps one bitboard per color and piece type plus
+ * occupancy masks, which the move generators and check detection work from.
+ * Every mutation goes through {@link #put} and {@link #remove} so the two views
+ * never disagree, and so the Zobrist key of the piece placement and the
+ * {@link PieceSquareTables} sums stay current.
+ * <p>
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
  */
+@JsonAdapter(ChessTypeAdapterFactory.class)
 public class ChessBoard {
 
     final private ChessPiece[][] board = new ChessPiece[8][8];
 
     private ChessPosition enPassantTgtSquare = null;
 
+    // bitboard index of the array above, rebuilt by reindex() after deserialization
+    private final transient long[] pieceBitboards = new long[12];
+    private final transient long[] teamBitboards = new long[2];
+    private transient long occupancy = 0L;
+
+    // Zobrist key of the pieces only, en passant is left to ChessGame like the other game state
+    private transient long zobristKey = 0L;
+
+    // PieceSquareTables sums over the pieces, from white's point of view, and the game phase
+    private transient int middlegameScore = 0;
+    private transient int endgameScore = 0;
+    private transient int phase = 0;
+
+    // king square per team, -1 when the team has no king on the board
+    private final transient int[] kingSquares = {-1, -1};
+
+    // bumped on every change, lets callers tell whether cached results are stale
+    private transient long version = 0L;
+
     public ChessBoard() {
 
     }
@@ -26,7 +57,11 @@ public class ChessBoard {
      * @param piece    the piece to add
      */
     public void addPiece(ChessPosition pos, ChessPiece piece) {
-        board[pos.getRow() - 1][pos.getColumn() - 1] = piece;
+        int square = Bitboards.square(pos);
+        remove(square);
+        if (piece != null) {
+            put(square, piece);
+        }
     }
 
     /**
@@ -40,6 +75,14 @@ public class ChessBoard {
         return board[pos.getRow() - 1][pos.getColumn() - 1];
     }
 
+    /**
+     * @param square square index, 0 for a1 up to 63 for h8
+     * @return piece on the square, or null if it is empty
+     */
+    public ChessPiece getPiece(int square) {
+        return board[square >>> 3][square & 7];
+    }
+
     /**
      * Moves a piece on the board while accounting for promotions.
      * Does not check if a move is legal, always executes regardless of legality
@@ -48,11 +91,11 @@ public class ChessBoard {
      */
     public void movePiece (ChessMove move) throws InvalidMoveException {
 
-        ChessPosition startPosition = move.getStartPosition();
-        ChessPosition endPosition = move.getEndPosition();
+        int startSquare = Bitboards.square(move.getStartPosition());
+        int endSquare = Bitboards.square(move.getEndPosition());
 
         // get piece info
-        ChessPiece piece = getPiece(startPosition);
+        ChessPiece piece = getPiece(startSquare);
 
         // can't move empty squares
         if (piece == null) {
@@ -64,32 +107,30 @@ public class ChessBoard {
 
         // piece is promoted, use that instead of original
         if (move.getPromotionPiece() != null) {
-            movedPiece = new ChessPiece(movedPiece.getTeamColor(), move.getPromotionPiece());
+            movedPiece = ChessPiece.of(movedPiece.getTeamColor(), move.getPromotionPiece());
         }
 
         // clear staring square
-        board[startPosition.getRow() - 1][startPosition.getColumn() - 1] = null;
+        remove(startSquare);
 
         // en passant logic
         if (piece.getPieceType() == ChessPiece.PieceType.PAWN &&
-                startPosition.getColumn() != endPosition.getColumn() &&
-                getPiece(endPosition) == null) {
+                (startSquare & 7) != (endSquare & 7) &&
+                getPiece(endSquare) == null) {
 
-            // calculate position of captured pawn
-            int captRow = startPosition.getRow();
-            int captCol = endPosition.getColumn();
-
-            ChessPosition captPawnPos = new ChessPosition(captRow, captCol);
+            // captured pawn shares the starting row and the ending column
+            int captPawnSquare = (startSquare & ~7) | (endSquare & 7);
 
             // remove captured pawn
-            board[captPawnPos.getRow() - 1][captPawnPos.getColumn() - 1] = null;
+            remove(captPawnSquare);
 
         }
 
         // end en passant logic
 
         // place piece by overwriting
-        board[endPosition.getRow() - 1][endPosition.getColumn() - 1] = movedPiece;
+        remove(endSquare);
+        put(endSquare, movedPiece);
     }
 
     /**
@@ -103,6 +144,15 @@ public class ChessBoard {
                 board[i][j] = null;
             }
         }
+        Arrays.fill(pieceBitboards, 0L);
+        Arrays.fill(teamBitboards, 0L);
+        occupancy = 0L;
+        zobristKey = 0L;
+        middlegameScore = 0;
+        endgameScore = 0;
+        phase = 0;
+        Arrays.fill(kingSquares, -1);
+        version++;
 
         // clear en passant square
         this.enPassantTgtSquare = null;
@@ -110,48 +160,335 @@ public class ChessBoard {
         // populate game pieces
 
         // white
-        addPiece(new ChessPosition(1,1), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
-        addPiece(new ChessPosition(1,2), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT));
-        addPiece(new ChessPosition(1,3), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.BISHOP));
-        addPiece(new ChessPosition(1,4), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.QUEEN));
-        addPiece(new ChessPosition(1,5), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
-        addPiece(new ChessPosition(1,6), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.BISHOP));
-        addPiece(new ChessPosition(1,7), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT));
-        addPiece(new ChessPosition(1,8), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
+        addPiece(ChessPosition.of(1,1), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
+        addPiece(ChessPosition.of(1,2), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT));
+        addPiece(ChessPosition.of(1,3), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.BISHOP));
+        addPiece(ChessPosition.of(1,4), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.QUEEN));
+        addPiece(ChessPosition.of(1,5), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
+        addPiece(ChessPosition.of(1,6), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.BISHOP));
+        addPiece(ChessPosition.of(1,7), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT));
+        addPiece(ChessPosition.of(1,8), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
 
         // white pawns
         for (int j = 1; j <= 8; j++) {
-            addPiece(new ChessPosition(2, j), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
+            addPiece(ChessPosition.of(2, j), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
         }
 
         // black
-        addPiece(new ChessPosition(8,1), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK));
-        addPiece(new ChessPosition(8,2), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT));
-        addPiece(new ChessPosition(8,3), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.BISHOP));
-        addPiece(new ChessPosition(8,4), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.QUEEN));
-        addPiece(new ChessPosition(8,5), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
-        addPiece(new ChessPosition(8,6), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.BISHOP));
-        addPiece(new ChessPosition(8,7), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT));
-        addPiece(new ChessPosition(8,8), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK));
+        addPiece(ChessPosition.of(8,1), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK));
+        addPiece(ChessPosition.of(8,2), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT));
+        addPiece(ChessPosition.of(8,3), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.BISHOP));
+        addPiece(ChessPosition.of(8,4), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.QUEEN));
+        addPiece(ChessPosition.of(8,5), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
+        addPiece(ChessPosition.of(8,6), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.BISHOP));
+        addPiece(ChessPosition.of(8,7), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT));
+        addPiece(ChessPosition.of(8,8), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK));
 
         // black pawns
         for (int j = 1; j <= 8; j++) {
-            addPiece(new ChessPosition(7, j), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
+            addPiece(ChessPosition.of(7, j), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
         }
     }
 
+    /**
+     * @param placement FEN piece placement, anything after the first field is ignored
+     * @return new board holding the pieces
+     * @throws IllegalArgumentException if the placement is malformed
+     */
+    public static ChessBoard fromFen(String placement) {
+        ChessBoard board = new ChessBoard();
+        Fen.parsePlacement(board, placement, 0);
+        return board;
+    }
+
+    /**
+     * @return the FEN piece placement field for this board, e.g.
+     * {@code rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR}
+     */
+    public String toFen() {
+        StringBuilder fen = new StringBuilder(72);
+        Fen.appendPlacement(this::getPiece, fen);
+        return fen.toString();
+    }
+
     @Override
     public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
         if (o == null || getClass() != o.getClass()) {
             return false;
         }
         ChessBoard that = (ChessBoard) o;
-        return Objects.deepEquals(board, that.board);
+        // different keys always mean different boards, equal keys still get the full compare
+        return zobristKey == that.zobristKey && Objects.deepEquals(board, that.board);
     }
 
     @Override
     public int hashCode() {
-        return Arrays.deepHashCode(board);
+        return Long.hashCode(zobristKey);
+    }
+
+    /**
+     * @return 64-bit Zobrist key of the piece placement. Boards with the same
+     * pieces on the same squares always have the same key. Side to move,
+     * castling and en passant are part of {@link ChessGame#zobristKey()}.
+     */
+    public long zobristKey() {
+        return zobristKey;
+    }
+
+    /**
+     * @return sum of the {@link PieceSquareTables} middlegame values of every piece, from white's point of view
+     */
+    public int getMiddlegameScore() {
+        return middlegameScore;
+    }
+
+    /**
+     * @return sum of the {@link PieceSquareTables} endgame values of every piece, from white's point of view
+     */
+    public int getEndgameScore() {
+        return endgameScore;
+    }
+
+    /**
+     * @return game phase of the pieces left, {@link PieceSquareTables#MAX_PHASE} or more at the start
+     */
+    public int getGamePhase() {
+        return phase;
+    }
+
+    /**
+     * @return bitboard of the squares holding this team's pieces of the given type
+     */
+    public long getBitboard(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return pieceBitboards[Bitboards.pieceIndex(color, type)];
+    }
+
+    /**
+     * @return bitboard of the squares holding any of this team's pieces
+     */
+    public long getTeamBitboard(ChessGame.TeamColor color) {
+        return teamBitboards[color.ordinal()];
+    }
+
+    /**
+     * @return bitboard of every occupied square
+     */
+    public long getOccupancy() {
+        return occupancy;
+    }
+
+    /**
+     * @return counter that changes whenever a piece or the en passant square
+     * changes. Two equal readings mean nothing on the board changed in between.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @param color team of the king
+     * @return square index of the team's king, or -1 if it has none
+     */
+    public int getKingSquare(ChessGame.TeamColor color) {
+        return kingSquares[color.ordinal()];
+    }
+
+    /**
+     * @param color team of the king
+     * @return position of the team's king, or null if it has none
+     */
+    public ChessPosition getKingPosition(ChessGame.TeamColor color) {
+        int square = kingSquares[color.ordinal()];
+        return square < 0 ? null : Bitboards.position(square);
+    }
+
+    /**
+     * @return number of pieces the team has on the board
+     */
+    public int getPieceCount(ChessGame.TeamColor color) {
+        return Long.bitCount(teamBitboards[color.ordinal()]);
+    }
+
+    /**
+     * The team bitboard is the piece list: it changes with every put and remove,
+     * so listing a team's pieces never has to look at empty squares.
+     *
+     * @return positions of the team's pieces, from a1 towards h8
+     */
+    public List<ChessPosition> getPiecePositions(ChessGame.TeamColor color) {
+        long pieces = teamBitboards[color.ordinal()];
+        List<ChessPosition> positions = new ArrayList<>(Long.bitCount(pieces));
+        while (pieces != 0) {
+            positions.add(Bitboards.position(Long.numberOfTrailingZeros(pieces)));
+            pieces &= pieces - 1;
+        }
+        return positions;
+    }
+
+    /**
+     * Finds every piece of a team attacking a square by looking outwards from
+     * the square: a knight attacks it exactly when a knight on the square would
+     * attack the knight back, and likewise for kings, for sliders along rays that
+     * stop at the first blocker, and for pawns using the other color's pattern.
+     *
+     * @param square target square index
+     * @param attackers team whose pieces are attacking
+     * @param occupied squares that block sliders, usually {@link #getOccupancy()}
+     * @return bitboard of the attacking pieces
+     */
+    public long attackersTo(int square, ChessGame.TeamColor attackers, long occupied) {
+        ChessGame.TeamColor defenders = attackers == ChessGame.TeamColor.WHITE
+                ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        long queens = getBitboard(attackers, ChessPiece.PieceType.QUEEN);
+
+        return (Bitboards.knightAttacksFrom(square) & getBitboard(attackers, ChessPiece.PieceType.KNIGHT))
+                | (Bitboards.kingAttacksFrom(square) & getBitboard(attackers, ChessPiece.PieceType.KING))
+                | (Bitboards.pawnAttacksFrom(defenders, square) & getBitboard(attackers, ChessPiece.PieceType.PAWN))
+                | (Bitboards.rookAttacks(square, occupied)
+                        & (getBitboard(attackers, ChessPiece.PieceType.ROOK) | queens))
+                | (Bitboards.bishopAttacks(square, occupied)
+                        & (getBitboard(attackers, ChessPiece.PieceType.BISHOP) | queens));
+    }
+
+    /**
+     * @param square target square index
+     * @param attackers team whose pieces are attacking
+     * @return true if any piece of the team attacks the square
+     */
+    public boolean isAttacked(int square, ChessGame.TeamColor attackers) {
+        return attackersTo(square, attackers, occupancy) != 0;
+    }
+
+    /**
+     * @param row row index, 0 for row 1
+     * @param shared a copy of the row taken earlier, or null
+     * @return the shared copy if the row still holds the same pieces, otherwise a new copy
+     */
+    ChessPiece[] snapshotRow(int row, ChessPiece[] shared) {
+        return shared != null && Arrays.equals(board[row], shared) ? shared : board[row].clone();
+    }
+
+    long[] copyBitboards() {
+        return pieceBitboards.clone();
+    }
+
+    /**
+     * Places a piece on an empty square, keeping the bitboards in step with the array
+     */
+    void put(int square, ChessPiece piece) {
+        long bit = Bitboards.bit(square);
+        version++;
+        board[square >>> 3][square & 7] = piece;
+        pieceBitboards[Bitboards.pieceIndex(piece.getTeamColor(), piece.getPieceType())] |= bit;
+        teamBitboards[piece.getTeamColor().ordinal()] |= bit;
+        occupancy |= bit;
+        zobristKey ^= Zobrist.piece(piece, square);
+        middlegameScore += PieceSquareTables.middlegame(piece, square);
+        endgameScore += PieceSquareTables.endgame(piece, square);
+        phase += PieceSquareTables.phase(piece.getPieceType());
+        if (piece.getPieceType() == ChessPiece.PieceType.KING) {
+            kingSquares[piece.getTeamColor().ordinal()] = square;
+        }
+    }
+
+    /**
+     * Empties a square, keeping the bitboards in step with the array
+     *
+     * @return the piece that was removed, or null if the square was already empty
+     */
+    ChessPiece remove(int square) {
+        ChessPiece piece = board[square >>> 3][square & 7];
+        if (piece != null) {
+            long bit = Bitboards.bit(square);
+            version++;
+            board[square >>> 3][square & 7] = null;
+            pieceBitboards[Bitboards.pieceIndex(piece.getTeamColor(), piece.getPieceType())] &= ~bit;
+            teamBitboards[piece.getTeamColor().ordinal()] &= ~bit;
+            occupancy &= ~bit;
+            zobristKey ^= Zobrist.piece(piece, square);
+            middlegameScore -= PieceSquareTables.middlegame(piece, square);
+            endgameScore -= PieceSquareTables.endgame(piece, square);
+            phase -= PieceSquareTables.phase(piece.getPieceType());
+            if (piece.getPieceType() == ChessPiece.PieceType.KING) {
+                // a board set up by hand may hold a second king of the same color
+                long kings = getBitboard(piece.getTeamColor(), ChessPiece.PieceType.KING);
+                kingSquares[piece.getTeamColor().ordinal()] = kings == 0 ? -1 : Long.numberOfTrailingZeros(kings);
+            }
+        }
+        return piece;
+    }
+
+    /**
+     * Empties every square and clears the en passant square
+     */
+    void clear() {
+        long pieces = occupancy;
+        while (pieces != 0) {
+            remove(Long.numberOfTrailingZeros(pieces));
+            pieces &= pieces - 1;
+        }
+        setEnPassantTgtSquare(null);
+    }
+
+    /**
+     * @return a new board with the same pieces and en passant square
+     */
+    public ChessBoard copy() {
+        ChessBoard copy = new ChessBoard();
+        copyInto(copy);
+        return copy;
+    }
+
+    /**
+     * Overwrites another board with this one's pieces and en passant square,
+     * copying the arrays and bitboards as they are instead of placing pieces
+     * one at a time
+     *
+     * @param target board to overwrite, reused so nothing is allocated
+     */
+    public void copyInto(ChessBoard target) {
+        if (target == this) {
+            return;
+        }
+        for (int row = 0; row < 8; row++) {
+            System.arraycopy(board[row], 0, target.board[row], 0, 8);
+        }
+        System.arraycopy(pieceBitboards, 0, target.pieceBitboards, 0, pieceBitboards.length);
+        System.arraycopy(teamBitboards, 0, target.teamBitboards, 0, teamBitboards.length);
+        System.arraycopy(kingSquares, 0, target.kingSquares, 0, kingSquares.length);
+        target.occupancy = occupancy;
+        target.zobristKey = zobristKey;
+        target.middlegameScore = middlegameScore;
+        target.endgameScore = endgameScore;
+        target.phase = phase;
+        target.enPassantTgtSquare = enPassantTgtSquare;
+        // the target's own count moves on, so its cached results go stale
+        target.version++;
+    }
+
+    /**
+     * Rebuilds the bitboards, Zobrist key and evaluation sums from the array. Gson fills the
+     * array directly, so this runs after every deserialization.
+     */
+    void reindex() {
+        Arrays.fill(pieceBitboards, 0L);
+        Arrays.fill(teamBitboards, 0L);
+        occupancy = 0L;
+        zobristKey = 0L;
+        middlegameScore = 0;
+        endgameScore = 0;
+        phase = 0;
+        Arrays.fill(kingSquares, -1);
+
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = getPiece(square);
+            if (piece != null) {
+                put(square, piece);
+            }
+        }
     }
 
     public ChessPosition getEnPassantTgtSquare() {
@@ -160,6 +497,7 @@ public class ChessBoard {
 
     public void setEnPassantTgtSquare(ChessPosition enPassantTgtSquare) {
         this.enPassantTgtSquare = enPassantTgtSquare;
+        version++;
     }
 }
 
@@ -1,8 +1,15 @@
 package chess;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * For a class that can manage a chess game, making moves on a board
@@ -10,10 +17,14 @@ import java.util.Objects;
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
  */
+@JsonAdapter(ChessTypeAdapterFactory.class)
 public class ChessGame {
 
+    // upper bound on legal moves in any position, the known maximum is 218
+    public static final int MAX_MOVES = 256;
+
     public TeamColor currentTurn = TeamColor.WHITE; // start on White turn by default
-    private ChessBoard board = new ChessBoard();
+    private ChessBoard board;
 
     // castling state tracking
     private boolean whiteKingMoved = false;
@@ -24,6 +35,38 @@ public class ChessGame {
     private boolean blackQueenSideRookMoved = false;
     private boolean gameOver = false;
 
+    // plies since the last capture or pawn move, for the fifty-move rule
+    private int halfmoveClock = 0;
+
+    // starts at 1 and goes up after each BLACK move, as in FEN
+    private int fullmoveNumber = 1;
+
+    // serialized form of the key history: only the positions a repetition can
+    // still reach, refreshed when the game is written and read back in
+    private long[] repetitionKeys = null;
+
+    // Zobrist key of every position reached, oldest first, popped again by undo
+    private transient long[] keyHistory = new long[64];
+    private transient int historyCount = 0;
+
+    // undo records for moves made in place, reused between moves
+    private transient MoveUndo[] undoStack = new MoveUndo[16];
+    private transient int undoCount = 0;
+
+    // checks and pins are worked out per call, the generator only keeps the arrays
+    private final transient LegalMoveGenerator generator = new LegalMoveGenerator();
+    // one piece's moves at a time while looking for any legal move, kept like the generator's arrays
+    private final transient int[] pieceMoves = new int[MoveCalculator.MAX_PIECE_MOVES];
+
+    // last status() result and the position it was computed for
+    private transient GameStatus cachedStatus = null;
+    private transient ChessBoard statusBoard = null;
+    private transient long statusVersion = 0L;
+    private transient TeamColor statusTurn = null;
+
+    // latest published position for other threads, only ever written by the thread changing the game
+    private transient volatile PositionSnapshot snapshot = null;
+
     @Override
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) {
@@ -35,11 +78,43 @@ public class ChessGame {
 
     @Override
     public int hashCode() {
-        return Objects.hash(currentTurn, board);
+        // only what equals compares, the full position key is zobristKey()
+        return Long.hashCode(board.zobristKey() ^ (currentTurn == TeamColor.BLACK ? Zobrist.BLACK_TO_MOVE : 0L));
+    }
+
+    /**
+     * Zobrist key of the whole position: pieces, side to move, the castling
+     * rights still available and the en passant square. The en passant square
+     * only counts when a pawn can actually capture on it, so positions that
+     * repeat in the sense of the rules share a key.
+     *
+     * @return 64-bit key, equal for equal positions
+     */
+    public long zobristKey() {
+        long key = board.zobristKey() ^ Zobrist.castling(castlingRights());
+        if (currentTurn == TeamColor.BLACK) {
+            key ^= Zobrist.BLACK_TO_MOVE;
+        }
+
+        ChessPosition enPassant = board.getEnPassantTgtSquare();
+        if (enPassant != null) {
+            int square = Bitboards.square(enPassant);
+            TeamColor enemy = currentTurn == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE;
+            // squares a pawn of the side to move could capture from are those an enemy pawn attacks
+            long capturers = Bitboards.pawnAttacksFrom(enemy, square)
+                    & board.getBitboard(currentTurn, ChessPiece.PieceType.PAWN);
+            if (capturers != 0) {
+                key ^= Zobrist.enPassant(square);
+            }
+        }
+        return key;
     }
 
     public ChessGame() {
+        board = new ChessBoard();
         board.resetBoard(); // initialize to blank state
+        resetHistory();
+        publish();
     }
 
     /**
@@ -56,6 +131,8 @@ public class ChessGame {
      */
     public void setTeamTurn(TeamColor team) {
         currentTurn = team;
+        resetHistory(); // a position set up by hand starts a new history
+        publish();
     }
 
     /**
@@ -66,6 +143,26 @@ public class ChessGame {
         BLACK
     }
 
+    /**
+     * Outcome of the position for the team whose turn it is
+     */
+    public enum GameStatus {
+        NORMAL,
+        CHECK,
+        CHECKMATE,
+        STALEMATE,
+        INSUFFICIENT_MATERIAL,
+        THREEFOLD_REPETITION,
+        FIFTY_MOVE_RULE;
+
+        /**
+         * @return true if no more moves can be played
+         */
+        public boolean isGameOver() {
+            return this != NORMAL && this != CHECK;
+        }
+    }
+
     /**
      * Gets a valid moves for a piece at the given location
      *
@@ -85,208 +182,442 @@ public class ChessGame {
             return validMoves;
         }
 
-        // who owns the piece at start position?
-        ChessGame.TeamColor playerColor = piece.getTeamColor();
+        // only legal moves are generated, nothing has to be tried out on the board
+        int[] moves = new int[MoveCalculator.MAX_PIECE_MOVES];
+        generator.prepare(board, piece.getTeamColor(), castlingRights());
+        int count = generator.generate(Bitboards.square(startPosition), moves, 0);
 
-        // get potential moves
-        Collection<ChessMove> potentialMoves = piece.pieceMoves(board, startPosition);
-
-        // castling logic
-        if (piece.getPieceType() == ChessPiece.PieceType.KING && !isInCheck(playerColor)) {
-            potentialMoves.addAll(getCastlingMoves(startPosition, playerColor));
-        }
-
-        // end castling logic
-        for (ChessMove move : potentialMoves) {
-            if (!moveMakesKingVulnerable(move, playerColor)) {
-                validMoves.add(move);
-            }
+        // only now turn the packed moves into objects for the caller
+        for (int i = 0; i < count; i++) {
+            validMoves.add(PackedMove.toChessMove(moves[i]));
         }
-        // return valid choices
         return validMoves;
     }
 
     /**
-     * @param position square to check
-     * @param teamColor of the attacking team
-     * @return boolean value of whether the square is safe
+     * Writes every legal move for a team into a buffer as {@link PackedMove}
+     * ints. This is the allocation-free counterpart of {@link #validMoves}.
+     *
+     * @param teamColor team to generate moves for
+     * @param moves buffer with room for {@link #MAX_MOVES} more moves
+     * @param count number of moves already in the buffer
+     * @return number of moves in the buffer afterwards
      */
-    private boolean isSquareAttacked(ChessPosition position, TeamColor teamColor) {
-        // iterate through board
-        for (int row = 1; row <= 8; row++) {
-            for (int col = 1; col <= 8; col++) {
+    public int legalMoves(TeamColor teamColor, int[] moves, int count) {
+        generator.prepare(board, teamColor, castlingRights());
+        return generator.generate(moves, count);
+    }
 
-                ChessPosition currentPos = new ChessPosition(row, col);
-                ChessPiece piece = board.getPiece(currentPos);
+    /**
+     * Makes a move in a chess game
+     *
+     * @param move chess move to perform
+     * @throws InvalidMoveException if move is invalid
+     */
+    public void makeMove(ChessMove move) throws InvalidMoveException {
+        ChessPosition startPos = move.getStartPosition();
+        ChessPiece piece = board.getPiece(startPos);
 
-                if (!isEnemy(piece, teamColor)) {
-                    continue;
-                }
-                if (attacksSquare(piece, currentPos, position)) {
-                    return true;
-                }
-            }
+        if (isGameOver()) {
+            throw new InvalidMoveException("Game is over");
+        }
+        // starting position
+        if (piece == null) {
+            throw new InvalidMoveException("No piece at starting position.");
+        }
+        // wrong turn
+        if (piece.getTeamColor() != currentTurn) {
+            throw new InvalidMoveException("Cannot move piece, it is " + currentTurn + " 's turn.");
+        }
+        // is proposed move allowed? a pawn reaching the last row has to say what it becomes
+        if (!isLegal(move)) {
+            throw new InvalidMoveException("Move is not allowed or leaves King in check.");
         }
-        return false; // safe square
+        // move piece, including the rook of a castle and the pawn taken en passant
+        doMove(PackedMove.fromChessMove(move));
+        publish();
     }
 
-    private boolean isEnemy(ChessPiece piece, TeamColor team) {
-        return piece != null && piece.getTeamColor() == team;
+    /**
+     * Checks a single move for the team whose turn it is, without generating
+     * the piece's other moves. Promotions must name exactly the piece the
+     * pawn becomes, and only promotions may name one.
+     *
+     * @param move move to check
+     * @return true if {@link #makeMove} would accept the move, game over aside
+     */
+    public boolean isLegal(ChessMove move) {
+        ChessPosition start = move.getStartPosition();
+        ChessPosition end = move.getEndPosition();
+        if (start == null || end == null ||
+                !OmnidirectionalMoves.onBoard(start.getRow(), start.getColumn()) ||
+                !OmnidirectionalMoves.onBoard(end.getRow(), end.getColumn())) {
+            return false;
+        }
+        generator.prepare(board, currentTurn, castlingRights());
+        return generator.isLegal(Bitboards.square(start), Bitboards.square(end), move.getPromotionPiece());
     }
 
-    private boolean attacksSquare(ChessPiece piece, ChessPosition from, ChessPosition target) {
-        for (ChessMove move : piece.pieceMoves(board, from)) {
-            if (move.getEndPosition().equals(target)) {
-                return true;
-            }
+    /**
+     * Takes back the last move made with {@link #makeMove}
+     *
+     * @throws IllegalStateException if there is no move to take back. Undo
+     * records are not serialized, so a game loaded from JSON starts with none.
+     */
+    public void unmakeMove() {
+        if (undoCount == 0) {
+            throw new IllegalStateException("No move to unmake");
         }
-        return false;
+        undoMove();
+        publish();
     }
 
     /**
+     * Plays a move on the board in place without checking that it is legal.
+     * Handles promotion, en passant, the rook of a castle, castling rights, the
+     * en passant target square and the turn, and records how to undo all of it.
+     * Pair every call with {@link #undoMove()}.
      *
-     * @param move ChessMove to compare
-     * @param playerColor TeamColor who is making the move
-     * @return boolean value of vulnerability
+     * @param move {@link PackedMove} for the piece on its starting square
      */
-    private boolean moveMakesKingVulnerable(ChessMove move, TeamColor playerColor) {
-        // copy the board
+    public void doMove(int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+
+        MoveUndo undo = pushUndo();
+        undo.from = from;
+        undo.to = to;
+        undo.enPassantTgtSquare = board.getEnPassantTgtSquare();
+        undo.castlingFlags = getCastlingFlags();
+        undo.halfmoveClock = halfmoveClock;
+        undo.rookFrom = -1;
+        undo.rookTo = -1;
+
+        ChessPiece piece = board.remove(from);
+        undo.moved = piece;
+
+        // a pawn moving diagonally onto an empty square captures en passant
+        boolean pawn = piece.getPieceType() == ChessPiece.PieceType.PAWN;
+        int capturedSquare = to;
+        if (pawn && (from & 7) != (to & 7) && board.getPiece(to) == null) {
+            capturedSquare = (from & ~7) | (to & 7);
+        }
+        undo.captured = board.remove(capturedSquare);
+        undo.capturedSquare = capturedSquare;
+
+        ChessPiece.PieceType promotion = PackedMove.promotion(move);
+        board.put(to, promotion == null ? piece : ChessPiece.of(piece.getTeamColor(), promotion));
+
+        // a two-square king move is a castle, bring the rook across
+        if (piece.getPieceType() == ChessPiece.PieceType.KING && Math.abs(to - from) == 2) {
+            undo.rookFrom = to > from ? from + 3 : from - 4;
+            undo.rookTo = to > from ? from + 1 : from - 1;
+            ChessPiece rook = board.remove(undo.rookFrom);
+            if (rook != null) {
+                board.put(undo.rookTo, rook);
+            }
+        }
 
-        ChessBoard tempBoard = new ChessBoard();
-        ChessBoard originalBoard = this.board;
+        // en passant state tracking
+        if (pawn && Math.abs(to - from) == 16) {
+            board.setEnPassantTgtSquare(Bitboards.position((from + to) / 2));
+        } else {
+            board.setEnPassantTgtSquare(null);
+        }
+
+        updateCastlingRights(piece, from, to);
+
+        // pawn moves and captures can never be undone, so no earlier position can repeat
+        halfmoveClock = pawn || undo.captured != null ? 0 : halfmoveClock + 1;
+
+        if (currentTurn == TeamColor.BLACK) {
+            fullmoveNumber++;
+        }
+
+        // change turn
+        currentTurn = (currentTurn == TeamColor.WHITE) ? TeamColor.BLACK : TeamColor.WHITE;
+
+        pushKey(zobristKey());
+    }
+
+    /**
+     * Reverses the last {@link #doMove}, without checking that there is one
+     */
+    public void undoMove() {
+        MoveUndo undo = undoStack[--undoCount];
 
-        // clone board
-        for (int row = 1; row <= 8 ; row++) {
-            for (int col = 1; col <= 8 ; col++) {
-                ChessPosition pos = new ChessPosition(row,col);
-                ChessPiece piece = originalBoard.getPiece(pos);
+        currentTurn = (currentTurn == TeamColor.WHITE) ? TeamColor.BLACK : TeamColor.WHITE;
+        if (currentTurn == TeamColor.BLACK) {
+            fullmoveNumber--;
+        }
 
-                if (piece != null) {
-                    tempBoard.addPiece(pos, piece);
-                }
+        if (undo.rookFrom >= 0) {
+            ChessPiece rook = board.remove(undo.rookTo);
+            if (rook != null) {
+                board.put(undo.rookFrom, rook);
             }
+        }
 
+        board.remove(undo.to);
+        board.put(undo.from, undo.moved);
+        if (undo.captured != null) {
+            board.put(undo.capturedSquare, undo.captured);
         }
 
-        try {
-            tempBoard.movePiece(move);
-        } catch (InvalidMoveException e) {
-            return true;
+        board.setEnPassantTgtSquare(undo.enPassantTgtSquare);
+        setCastlingFlags(undo.castlingFlags);
+        halfmoveClock = undo.halfmoveClock;
+        historyCount--;
+    }
+
+    private void pushKey(long key) {
+        if (historyCount == keyHistory.length) {
+            keyHistory = Arrays.copyOf(keyHistory, keyHistory.length * 2);
         }
+        keyHistory[historyCount++] = key;
+    }
 
-        // swap boards before running check
-        setBoard(tempBoard);
+    /**
+     * Starts the key history over from the current position
+     */
+    private void resetHistory() {
+        historyCount = 0;
+        halfmoveClock = 0;
+        cachedStatus = null;
+        pushKey(zobristKey());
+    }
 
-        boolean isVulnerable = isInCheck(playerColor);
+    /**
+     * The last published position as an immutable {@link PositionSnapshot}.
+     * Only the thread changing the game publishes, once a change is complete,
+     * so this is safe to call from any thread and never shows a move half
+     * made. makeMove, unmakeMove and the setters publish before returning;
+     * callers of {@link #doMove}, {@link #undoMove} or of edits made straight
+     * to the board call {@link #publish()} when they are done.
+     *
+     * @return snapshot of the position, the same instance until the next publish
+     */
+    public PositionSnapshot snapshot() {
+        return snapshot;
+    }
 
-        // restore board state
-        setBoard(originalBoard);
+    /**
+     * Takes a new snapshot of the current position for {@link #snapshot()},
+     * reusing the rows of the last one that the moves since have not touched.
+     * Must be called from the thread changing the game.
+     *
+     * @return the snapshot published
+     */
+    public PositionSnapshot publish() {
+        PositionSnapshot current = new PositionSnapshot(snapshot, board, currentTurn,
+                castlingRights() & Fen.possibleCastlingRights(board), halfmoveClock, fullmoveNumber,
+                zobristKey(), gameOver, repetitionWindow());
+        snapshot = current;
+        return current;
+    }
 
-        return isVulnerable;
+    /**
+     * Creates a game from a FEN record, or from an EPD record whose clocks
+     * then start at 0 and 1
+     *
+     * @param fen e.g. {@code rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1}
+     * @return new game in that position
+     * @throws IllegalArgumentException if the record is malformed
+     */
+    public static ChessGame fromFen(String fen) {
+        ChessGame game = new ChessGame();
+        game.loadFen(fen);
+        return game;
     }
 
     /**
-     * Makes a move in a chess game
+     * Replaces this game's position with a FEN or EPD record, reusing the
+     * current board. Move history and undo records are dropped.
      *
-     * @param move chess move to perform
-     * @throws InvalidMoveException if move is invalid
+     * @param fen FEN or EPD record
+     * @throws IllegalArgumentException if the record is malformed
      */
-    public void makeMove(ChessMove move) throws InvalidMoveException {
-        ChessPosition startPos = move.getStartPosition();
-        ChessPiece piece = board.getPiece(startPos);
+    public void loadFen(String fen) {
+        Fen.load(this, fen);
+    }
 
-        if (gameOver) {
-            throw new InvalidMoveException("Game is over");
-        }
-        // starting position
-        if (piece == null) {
-            throw new InvalidMoveException("No piece at starting position.");
-        }
-        // wrong turn
-        if (piece.getTeamColor() != currentTurn) {
-            throw new InvalidMoveException("Cannot move piece, it is " + currentTurn + " 's turn.");
-        }
-        Collection<ChessMove> allowedMoves = validMoves(startPos);
-        // is proposed move allowed?
-        if (!allowedMoves.contains(move)) {
-            // check promotion pieces
-            boolean found = false;
-
-            // compare move start and end
-            for (ChessMove allowedMove : allowedMoves) {
-                if (allowedMove.getEndPosition().equals(move.getEndPosition()) &&
-                        allowedMove.getStartPosition().equals(move.getStartPosition())) {
-                    found = true; // end search
-                    break;
-                }
-            }
-            if (!found) {
-                throw new InvalidMoveException("Move is not allowed or leaves King in check.");
+    /**
+     * @return FEN record of the current position
+     */
+    public String toFen() {
+        return Fen.format(this, castlingRights(), halfmoveClock, fullmoveNumber);
+    }
+
+    /**
+     * Sets the game state a FEN record holds besides the pieces. Castling
+     * rights map onto the rook flags, the king flags are cleared.
+     */
+    void setPosition(TeamColor turn, int castlingRights, int halfmoveClock, int fullmoveNumber) {
+        currentTurn = turn;
+        whiteKingMoved = false;
+        blackKingMoved = false;
+        whiteKingsideRookMoved = (castlingRights & LegalMoveGenerator.WHITE_KINGSIDE) == 0;
+        whiteQueensideRookMoved = (castlingRights & LegalMoveGenerator.WHITE_QUEENSIDE) == 0;
+        blackKingSideRookMoved = (castlingRights & LegalMoveGenerator.BLACK_KINGSIDE) == 0;
+        blackQueenSideRookMoved = (castlingRights & LegalMoveGenerator.BLACK_QUEENSIDE) == 0;
+        gameOver = false;
+        undoCount = 0;
+
+        resetHistory();
+        this.halfmoveClock = halfmoveClock;
+        this.fullmoveNumber = fullmoveNumber;
+        publish();
+    }
+
+    /**
+     * @return plies since the last capture or pawn move
+     */
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    /**
+     * @return number of the current full move, starting at 1 and going up after each BLACK move
+     */
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    /**
+     * Counts how often the current position has occurred, this time included.
+     * Only positions since the last capture or pawn move can match, and only
+     * every other one has the same side to move, so the scan is short.
+     *
+     * @return 1 for a position seen for the first time
+     */
+    public int repetitionCount() {
+        long key = keyHistory[historyCount - 1];
+        int oldest = Math.max(0, historyCount - 1 - halfmoveClock);
+        int count = 1;
+        for (int i = historyCount - 3; i >= oldest; i -= 2) {
+            if (keyHistory[i] == key) {
+                count++;
             }
         }
-        // move piece
-        board.movePiece(move);
-        // castling rook move
-        if (piece.getPieceType() == ChessPiece.PieceType.KING) {
-            int colDiff = move.getEndPosition().getColumn() - startPos.getColumn();
-            if (Math.abs(colDiff) == 2) { // A two-square move indicates a castle.
-                int row = startPos.getRow();
-                if (colDiff > 0) { // Kingside castle
-                    ChessPosition rookStart = new ChessPosition(row, 8);
-                    ChessPosition rookEnd = new ChessPosition(row, 6);
-                    board.movePiece(new ChessMove(rookStart, rookEnd, null));
-                } else { // Queenside castle
-                    ChessPosition rookStart = new ChessPosition(row, 1);
-                    ChessPosition rookEnd = new ChessPosition(row, 4);
-                    board.movePiece(new ChessMove(rookStart, rookEnd, null));
-                }
+        return count;
+    }
+
+    /**
+     * Copies the part of the key history that can still matter into the
+     * serialized field. Called by {@link ChessTypeAdapterFactory} before writing.
+     */
+    void storeHistory() {
+        repetitionKeys = repetitionWindow();
+    }
+
+    /**
+     * @return keys of the positions a repetition can still reach, oldest first
+     */
+    private long[] repetitionWindow() {
+        int oldest = Math.max(0, historyCount - 1 - halfmoveClock);
+        return Arrays.copyOfRange(keyHistory, oldest, historyCount);
+    }
+
+    /**
+     * Takes over a history saved elsewhere, such as by a {@link PositionSnapshot}
+     *
+     * @param keys keys since the last irreversible move, ending with the current position's
+     */
+    void restoreHistory(long[] keys) {
+        repetitionKeys = keys;
+        restoreHistory();
+    }
+
+    /**
+     * Rebuilds the key history from the serialized field. Called by
+     * {@link ChessTypeAdapterFactory} after reading; games stored before the
+     * history existed start a new one.
+     */
+    void restoreHistory() {
+        int clock = halfmoveClock;
+        resetHistory();
+        if (repetitionKeys != null && repetitionKeys.length > 0
+                && repetitionKeys[repetitionKeys.length - 1] == keyHistory[0]) {
+            historyCount = 0;
+            for (long key : repetitionKeys) {
+                pushKey(key);
             }
         }
-        // en passant state tracking
-        ChessPosition pawnStart = move.getStartPosition();
-        ChessPosition pawnEnd = move.getEndPosition();
-        ChessPiece movedPiece = board.getPiece(pawnEnd);
-        // clear target square
-        board.setEnPassantTgtSquare(null);
-
-        if (movedPiece != null && movedPiece.getPieceType() == ChessPiece.PieceType.PAWN) {
-            int startRow = pawnStart.getRow();
-            int endRow = pawnEnd.getRow();
-
-            // check for two square move
-            if (Math.abs(startRow - endRow) == 2) {
-                // en passant square has been passed
-                int tgtRow = (startRow + endRow) / 2;
-                ChessPosition target = new ChessPosition(tgtRow, pawnEnd.getColumn());
-                board.setEnPassantTgtSquare(target);
-            }
+        halfmoveClock = clock;
+        publish();
+    }
+
+    private MoveUndo pushUndo() {
+        if (undoCount == undoStack.length) {
+            undoStack = Arrays.copyOf(undoStack, undoStack.length * 2);
+        }
+        MoveUndo undo = undoStack[undoCount];
+        if (undo == null) {
+            undo = new MoveUndo();
+            undoStack[undoCount] = undo;
         }
+        undoCount++;
+        return undo;
+    }
 
-        // castling logic and state tracking
+    /**
+     * Castling is lost for good once the king or a rook leaves its starting
+     * square, or a rook is captured on it
+     */
+    private void updateCastlingRights(ChessPiece piece, int from, int to) {
         if (piece.getPieceType() == ChessPiece.PieceType.KING) {
             if (piece.getTeamColor() == TeamColor.WHITE) {
                 whiteKingMoved = true;
             } else {
                 blackKingMoved = true;
             }
+        }
 
-        } else if (piece.getPieceType() == ChessPiece.PieceType.ROOK) {
-            if (piece.getTeamColor() == TeamColor.WHITE) {
-                if (startPos.equals(new ChessPosition(1,1))) {
-                    whiteQueensideRookMoved = true;
-                } else if (startPos.equals(new ChessPosition(1,8))) {
-                    whiteKingsideRookMoved  = true;
-                }
-            } else {
-                if (startPos.equals(new ChessPosition(8,1))) {
-                    blackQueenSideRookMoved = true;
-                } else if (startPos.equals(new ChessPosition(8,8))) {
-                    blackKingSideRookMoved = true;
-                }
-            }
+        rookSquareTouched(from);
+        rookSquareTouched(to);
+    }
+
+    private void rookSquareTouched(int square) {
+        switch (square) {
+            case 0 -> whiteQueensideRookMoved = true;  // a1
+            case 7 -> whiteKingsideRookMoved = true;   // h1
+            case 56 -> blackQueenSideRookMoved = true; // a8
+            case 63 -> blackKingSideRookMoved = true;  // h8
+            default -> { }
         }
-        // change turn
-        currentTurn = (currentTurn == TeamColor.WHITE) ? TeamColor.BLACK : TeamColor.WHITE;
+    }
+
+    /**
+     * @return the six castling booleans packed into the low bits of an int
+     */
+    private int getCastlingFlags() {
+        return (whiteKingMoved ? 1 : 0)
+                | (blackKingMoved ? 1 << 1 : 0)
+                | (whiteKingsideRookMoved ? 1 << 2 : 0)
+                | (whiteQueensideRookMoved ? 1 << 3 : 0)
+                | (blackKingSideRookMoved ? 1 << 4 : 0)
+                | (blackQueenSideRookMoved ? 1 << 5 : 0);
+    }
+
+    /**
+     * @return castling still possible as bits: white kingside, white queenside,
+     * black kingside, black queenside, as in {@link LegalMoveGenerator}.
+     * Different flags can leave the same rights.
+     */
+    private int castlingRights() {
+        return (!whiteKingMoved && !whiteKingsideRookMoved ? 1 : 0)
+                | (!whiteKingMoved && !whiteQueensideRookMoved ? 1 << 1 : 0)
+                | (!blackKingMoved && !blackKingSideRookMoved ? 1 << 2 : 0)
+                | (!blackKingMoved && !blackQueenSideRookMoved ? 1 << 3 : 0);
+    }
+
+    private void setCastlingFlags(int flags) {
+        whiteKingMoved = (flags & 1) != 0;
+        blackKingMoved = (flags & (1 << 1)) != 0;
+        whiteKingsideRookMoved = (flags & (1 << 2)) != 0;
+        whiteQueensideRookMoved = (flags & (1 << 3)) != 0;
+        blackKingSideRookMoved = (flags & (1 << 4)) != 0;
+        blackQueenSideRookMoved = (flags & (1 << 5)) != 0;
     }
 
     /**
@@ -297,29 +628,13 @@ public class ChessGame {
      */
     public boolean isInCheck(TeamColor teamColor) {
         // part 1
-        // find king position
-        ChessPosition kingPos = null;
-
-        for (int row = 1; row <=8 ; row++) {
-            for (int col = 1; col <= 8 ; col++) {
-                // current cell
-                ChessPosition tempPos = new ChessPosition(row,col);
-                ChessPiece tempPiece = board.getPiece(tempPos);
-
-                // check null, team and type
-                if (tempPiece != null
-                        && tempPiece.getTeamColor() == teamColor
-                        && tempPiece.getPieceType() == ChessPiece.PieceType.KING ) {
-                    kingPos = tempPos;
-                    break; // terminate search
-                }
-            }
-        }
+        // find king position, the board keeps track of it
+        int kingSquare = board.getKingSquare(teamColor);
 
         // if no king found, return false
         // you should never get to this point
         // anarchy chess mode?
-        if (kingPos == null) {
+        if (kingSquare < 0) {
             return false;
         }
 
@@ -328,7 +643,108 @@ public class ChessGame {
 
         ChessGame.TeamColor enemyColor = (teamColor == TeamColor.WHITE) ? TeamColor.BLACK : TeamColor.WHITE;
 
-        return isSquareAttacked(kingPos, enemyColor);
+        return board.isAttacked(kingSquare, enemyColor);
+    }
+
+    /**
+     * Works out check, checkmate, stalemate and the draws for the team to move
+     * in one pass: checks and pins are found once, and move generation stops
+     * at the first legal move. The result is kept until the board, the board's
+     * contents or the turn changes, so asking again is free.
+     *
+     * @return status of the position for {@link #getTeamTurn()}
+     */
+    public GameStatus status() {
+        if (cachedStatus != null && statusBoard == board && statusVersion == board.getVersion()
+                && statusTurn == currentTurn) {
+            return cachedStatus;
+        }
+
+        generator.prepare(board, currentTurn, castlingRights());
+        boolean inCheck = generator.inCheck();
+
+        GameStatus status;
+        if (!hasPreparedLegalMove(currentTurn)) {
+            status = inCheck ? GameStatus.CHECKMATE : GameStatus.STALEMATE;
+        } else if (hasInsufficientMaterial()) {
+            status = GameStatus.INSUFFICIENT_MATERIAL;
+        } else if (halfmoveClock >= 100) {
+            status = GameStatus.FIFTY_MOVE_RULE;
+        } else if (repetitionCount() >= 3) {
+            status = GameStatus.THREEFOLD_REPETITION;
+        } else {
+            status = inCheck ? GameStatus.CHECK : GameStatus.NORMAL;
+        }
+
+        cachedStatus = status;
+        statusBoard = board;
+        statusVersion = board.getVersion();
+        statusTurn = currentTurn;
+        return status;
+    }
+
+    /**
+     * Checks whether a team can move at all, stopping at the first legal move
+     * found rather than listing them all
+     *
+     * @param teamColor team to check moves for
+     * @return true if the team has at least one legal move
+     */
+    public boolean hasAnyLegalMove(TeamColor teamColor) {
+        generator.prepare(board, teamColor, castlingRights());
+        return hasPreparedLegalMove(teamColor);
+    }
+
+    /**
+     * Lazily generated legal moves for a team, see {@link LegalMoveSpliterator}.
+     * Moves are only generated as the stream pulls them, so short-circuiting
+     * operations like {@code findFirst} or {@code anyMatch} stop early.
+     * The board must not change while the stream is in use.
+     *
+     * @param teamColor team to generate moves for
+     * @return stream of the team's legal moves
+     */
+    public Stream<ChessMove> legalMoveStream(TeamColor teamColor) {
+        return StreamSupport.stream(new LegalMoveSpliterator(board, teamColor, castlingRights()), false);
+    }
+
+    /**
+     * @return true if the generator, already prepared for the team, finds any legal move
+     */
+    private boolean hasPreparedLegalMove(TeamColor teamColor) {
+        long pieces = board.getTeamBitboard(teamColor);
+        while (pieces != 0) {
+            int square = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            if (generator.generate(square, pieceMoves, 0) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Neither side can ever checkmate: bare kings, a single minor piece, or
+     * only bishops that all stand on squares of one color
+     */
+    private boolean hasInsufficientMaterial() {
+        long heavy = 0L;
+        long knights = 0L;
+        long bishops = 0L;
+        for (TeamColor team : TeamColor.values()) {
+            heavy |= board.getBitboard(team, ChessPiece.PieceType.PAWN)
+                    | board.getBitboard(team, ChessPiece.PieceType.ROOK)
+                    | board.getBitboard(team, ChessPiece.PieceType.QUEEN);
+            knights |= board.getBitboard(team, ChessPiece.PieceType.KNIGHT);
+            bishops |= board.getBitboard(team, ChessPiece.PieceType.BISHOP);
+        }
+        if (heavy != 0) {
+            return false;
+        }
+        if (Long.bitCount(knights | bishops) <= 1) {
+            return true;
+        }
+        return knights == 0 && ((bishops & Bitboards.LIGHT_SQUARES) == 0 || (bishops & Bitboards.DARK_SQUARES) == 0);
     }
 
     /**
@@ -338,11 +754,14 @@ public class ChessGame {
      * @return True if the specified team is in checkmate
      */
     public boolean isInCheckmate(TeamColor teamColor) {
+        if (teamColor == currentTurn) {
+            return status() == GameStatus.CHECKMATE;
+        }
         if (!isInCheck(teamColor)) {
             return false; // cannot be checkmate if not in check
         }
-        // if the collection is empty, then no valid moves remaining
-        return allValidMoves(teamColor).isEmpty();
+        // no legal move left, the search stops at the first one it finds
+        return !hasAnyLegalMove(teamColor);
     }
 
     /**
@@ -353,11 +772,75 @@ public class ChessGame {
      * @return True if the specified team is in stalemate, otherwise false
      */
     public boolean isInStalemate(TeamColor teamColor) {
+        if (teamColor == currentTurn) {
+            return status() == GameStatus.STALEMATE;
+        }
         if (isInCheck(teamColor)) {
             return false; // cannot be in check and stalemated
         }
         // if not in check, but no valid moves exist to end game state, then game state is stalemate
-        return allValidMoves(teamColor).isEmpty();
+        return !hasAnyLegalMove(teamColor);
+    }
+
+    /**
+     * Used by {@link #copy()}, which fills in everything else
+     */
+    private ChessGame(ChessBoard board) {
+        this.board = board;
+    }
+
+    /**
+     * Copies the game: the board, side to move, castling rights, en passant
+     * square, clocks and repetition history. Arrays are copied wholesale, so
+     * this is far cheaper than a FEN or JSON round trip. The copy starts with
+     * no undo records, so it cannot take back moves made before it was taken.
+     *
+     * @return an independent game in the same state
+     */
+    public ChessGame copy() {
+        ChessGame copy = new ChessGame(board.copy());
+        copyStateInto(copy);
+        return copy;
+    }
+
+    /**
+     * Overwrites another game with this one's state, as {@link #copy()} does,
+     * reusing the target's board and arrays. Search workers can keep one game
+     * each and refill it per task instead of allocating.
+     *
+     * @param target game to overwrite
+     */
+    public void copyInto(ChessGame target) {
+        if (target == this) {
+            return;
+        }
+        board.copyInto(target.board);
+        copyStateInto(target);
+    }
+
+    private void copyStateInto(ChessGame target) {
+        target.currentTurn = currentTurn;
+        target.whiteKingMoved = whiteKingMoved;
+        target.blackKingMoved = blackKingMoved;
+        target.whiteKingsideRookMoved = whiteKingsideRookMoved;
+        target.whiteQueensideRookMoved = whiteQueensideRookMoved;
+        target.blackKingSideRookMoved = blackKingSideRookMoved;
+        target.blackQueenSideRookMoved = blackQueenSideRookMoved;
+        target.gameOver = gameOver;
+        target.halfmoveClock = halfmoveClock;
+        target.fullmoveNumber = fullmoveNumber;
+        // replaced, never written in place, so the array can be shared
+        target.repetitionKeys = repetitionKeys;
+
+        if (target.keyHistory.length < historyCount) {
+            target.keyHistory = new long[keyHistory.length];
+        }
+        System.arraycopy(keyHistory, 0, target.keyHistory, 0, historyCount);
+        target.historyCount = historyCount;
+
+        target.undoCount = 0;
+        target.cachedStatus = null;
+        target.publish();
     }
 
     /**
@@ -367,6 +850,9 @@ public class ChessGame {
      */
     public void setBoard(ChessBoard board) {
         this.board = board;
+        undoCount = 0; // undo records refer to the old board
+        resetHistory();
+        publish();
     }
 
     /**
@@ -379,100 +865,66 @@ public class ChessGame {
     }
 
     /**
-     * Helper function that returns all possible moves for a team
-     * @param teamColor Team to check moves for
-     * @return Collection<ChessMove> allValidMoves for team
+     * Counts the leaf nodes of the legal move tree below the current position,
+     * the standard way to check a move generator against published numbers.
+     * Moves are played for whichever team's turn it is, in place.
+     *
+     * @param depth number of plies to search, 0 counts the position itself
+     * @return number of move sequences of exactly that length
      */
-    private Collection<ChessMove> allValidMoves(TeamColor teamColor) {
-        Collection<ChessMove> allValidMoves = new ArrayList<>();
+    public long perft(int depth) {
+        if (depth <= 0) {
+            return 1;
+        }
+        // one buffer for the whole search, each ply uses the slice after its parent's moves
+        return perft(depth, new int[MAX_MOVES * depth], 0);
+    }
 
-        // iterate through board
-        for (int row = 1; row <= 8 ; row++) {
-            for (int col = 1; col <= 8; col++) {
-                ChessPosition tempPos = new ChessPosition(row, col);
-                ChessPiece piece = board.getPiece(tempPos);
+    private long perft(int depth, int[] moves, int offset) {
+        int end = legalMoves(currentTurn, moves, offset);
+        if (depth == 1) {
+            return end - offset; // no need to play the last ply
+        }
 
-                // if not empty or other team, calculate valid moves
-                if (piece != null && piece.getTeamColor() == teamColor) {
-                    allValidMoves.addAll(validMoves(tempPos));
-                }
-            }
+        long nodes = 0;
+        for (int i = offset; i < end; i++) {
+            doMove(moves[i]);
+            nodes += perft(depth - 1, moves, end);
+            undoMove();
         }
-        // return all possible moves for team
-        return allValidMoves;
-    }
-
-    /**
-     * Handles all castling logic for white and black teams
-     * @param startPosition starting position of the piece in question
-     * @param playerColor team of the player
-     * @return Collection<ChessMove> of valid moves related to castling
-     */
-    private Collection<ChessMove> getCastlingMoves (ChessPosition startPosition, TeamColor playerColor) {
-        Collection<ChessMove> potentialMoves = new ArrayList<>();
-
-        int kingRow = playerColor == TeamColor.WHITE ? 1 : 8;
-        int kingCol = 5;
-
-        if (!startPosition.equals(new ChessPosition(kingRow,kingCol))) {
-            return potentialMoves;
-        }
-
-        if (playerColor == TeamColor.WHITE) {
-            if (startPosition.equals(new ChessPosition(kingRow,5))) {
-                // kingside castle
-                if (!whiteKingMoved &&
-                        !whiteKingsideRookMoved &&
-                        board.getPiece(new ChessPosition(kingRow,6)) == null &&
-                        board.getPiece(new ChessPosition(kingRow,7)) == null) {
-                    if (!isSquareAttacked(new ChessPosition(kingRow,6), TeamColor.BLACK)) {
-                        potentialMoves.add(new ChessMove(startPosition, new ChessPosition(kingRow,7), null));
-                    }
-                }
-                // queenside castle
-                if (!whiteKingMoved &&
-                        !whiteQueensideRookMoved &&
-                        board.getPiece(new ChessPosition(kingRow,2)) == null &&
-                        board.getPiece(new ChessPosition(kingRow,3)) == null &&
-                        board.getPiece(new ChessPosition(kingRow,4)) == null) {
-                    if (!isSquareAttacked(new ChessPosition(kingRow,4), TeamColor.BLACK)) {
-                        potentialMoves.add(new ChessMove(startPosition, new ChessPosition(kingRow,3), null));
-                    }
-                }
-            }
+        return nodes;
+    }
 
-        } else { // black
-            if (startPosition.equals(new ChessPosition(kingRow,5))) {
-                // kingside castle
-                if(!blackKingMoved &&
-                        !blackKingSideRookMoved &&
-                        board.getPiece(new ChessPosition(kingRow,6)) == null &&
-                        board.getPiece(new ChessPosition(kingRow,7)) == null) {
-                    if (!isSquareAttacked(new ChessPosition(kingRow,6), TeamColor.WHITE)) {
-                        potentialMoves.add(new ChessMove(startPosition, new ChessPosition(kingRow,7), null));
-                    }
-                }
-
-                // queenside castle
-                if (!blackKingMoved &&
-                        !blackQueenSideRookMoved &&
-                        board.getPiece(new ChessPosition(kingRow,2)) == null &&
-                        board.getPiece(new ChessPosition(kingRow,3)) == null &&
-                        board.getPiece(new ChessPosition(kingRow,4)) == null) {
-                    if (!isSquareAttacked(new ChessPosition(kingRow,4), TeamColor.WHITE)) {
-                        potentialMoves.add(new ChessMove(startPosition, new ChessPosition(kingRow,3), null));
-                    }
-                }
-            }
+    /**
+     * Splits {@link #perft} by root move, which narrows a wrong total down to
+     * the move whose subtree disagrees with a reference engine
+     *
+     * @param depth number of plies to search, including the root move
+     * @return node count below each legal root move, in generation order
+     */
+    public Map<ChessMove, Long> perftDivide(int depth) {
+        Map<ChessMove, Long> divide = new LinkedHashMap<>();
+        int[] moves = new int[MAX_MOVES];
+        int count = legalMoves(currentTurn, moves, 0);
+
+        for (int i = 0; i < count; i++) {
+            doMove(moves[i]);
+            divide.put(PackedMove.toChessMove(moves[i]), perft(depth - 1));
+            undoMove();
         }
-        return potentialMoves;
+        return divide;
     }
 
+    /**
+     * @return true once the game was ended by a player or the position on the
+     * board ends it: checkmate, stalemate or one of the draws in {@link GameStatus}
+     */
     public boolean isGameOver() {
-        return gameOver;
+        return gameOver || status().isGameOver();
     }
 
     public void setGameOver(boolean gameOver) {
         this.gameOver = gameOver;
+        publish();
     }
 }
@@ -1,5 +1,7 @@
 package chess;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import java.util.Objects;
 
 /**
@@ -8,11 +10,16 @@ import java.util.Objects;
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
  */
+@JsonAdapter(ChessTypeAdapterFactory.class)
 public class ChessMove {
 
-    private ChessPosition startPosition;
-    private ChessPosition endPosition;
-    private ChessPiece.PieceType promotionPiece;
+    // shared instances keyed by the PackedMove bits without flags, filled on first use.
+    // the fields are final, so a racing thread sees either null or a complete move
+    private static final ChessMove[] INTERNED = new ChessMove[PackedMove.withoutFlags(-1) + 1];
+
+    private final ChessPosition startPosition;
+    private final ChessPosition endPosition;
+    private final ChessPiece.PieceType promotionPiece;
 
     public ChessMove(ChessPosition startPosition, ChessPosition endPosition,
                      ChessPiece.PieceType promotionPiece) {
@@ -21,6 +28,43 @@ public class ChessMove {
         this.promotionPiece = promotionPiece;
     }
 
+    /**
+     * Returns the shared instance for a move instead of allocating one. Moves
+     * to or from a square off the board are still created fresh.
+     *
+     * @param startPosition ChessPosition of starting location
+     * @param endPosition ChessPosition of ending location
+     * @param promotionPiece type to promote to, or null if no promotion
+     * @return ChessMove with canonical positions
+     */
+    public static ChessMove of(ChessPosition startPosition, ChessPosition endPosition,
+                               ChessPiece.PieceType promotionPiece) {
+        if (!onBoard(startPosition) || !onBoard(endPosition)) {
+            return new ChessMove(startPosition, endPosition, promotionPiece);
+        }
+        return interned(PackedMove.encode(Bitboards.square(startPosition), Bitboards.square(endPosition),
+                promotionPiece, PackedMove.NONE));
+    }
+
+    /**
+     * @param move {@link PackedMove}, flags are ignored
+     * @return shared ChessMove for the move
+     */
+    static ChessMove interned(int move) {
+        int key = PackedMove.withoutFlags(move);
+        ChessMove cached = INTERNED[key];
+        if (cached == null) {
+            cached = new ChessMove(ChessPosition.ofSquare(PackedMove.from(key)),
+                    ChessPosition.ofSquare(PackedMove.to(key)), PackedMove.promotion(key));
+            INTERNED[key] = cached;
+        }
+        return cached;
+    }
+
+    private static boolean onBoard(ChessPosition position) {
+        return position != null && OmnidirectionalMoves.onBoard(position.getRow(), position.getColumn());
+    }
+
     /**
      * @return ChessPosition of starting location
      */
@@ -1,7 +1,10 @@
 package chess;
 
-import java.util.ArrayList;
+import com.google.gson.annotations.JsonAdapter;
+
 import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -10,8 +13,32 @@ import java.util.Objects;
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
  */
+@JsonAdapter(ChessTypeAdapterFactory.class)
 public class ChessPiece {
 
+    // one shared instance per color and type, indexed like Bitboards.pieceIndex
+    private static final ChessPiece[] PIECES = new ChessPiece[12];
+
+    static {
+        for (ChessGame.TeamColor color : ChessGame.TeamColor.values()) {
+            for (PieceType type : PieceType.values()) {
+                PIECES[Bitboards.pieceIndex(color, type)] = new ChessPiece(color, type);
+            }
+        }
+    }
+
+    // the generators keep no state, one of each serves every piece
+    private static final Map<PieceType, MoveCalculator> CALCULATORS = new EnumMap<>(PieceType.class);
+
+    static {
+        CALCULATORS.put(PieceType.BISHOP, new BishopMoveGenerator());
+        CALCULATORS.put(PieceType.QUEEN, new QueenMoveGenerator());
+        CALCULATORS.put(PieceType.ROOK, new RookMoveGenerator());
+        CALCULATORS.put(PieceType.KING, new KingMoveGenerator());
+        CALCULATORS.put(PieceType.KNIGHT, new KnightMoveGenerator());
+        CALCULATORS.put(PieceType.PAWN, new PawnMoveGenerator());
+    }
+
     private final ChessGame.TeamColor color;
     private final PieceType type;
 
@@ -21,6 +48,21 @@ public class ChessPiece {
         this.type = type;
     }
 
+    /**
+     * Returns the shared instance for a color and type instead of allocating
+     * one. Pieces are immutable, so the same instance can sit on many squares.
+     *
+     * @param pieceColor team the piece belongs to
+     * @param type type of the piece
+     * @return ChessPiece for the color and type
+     */
+    public static ChessPiece of(ChessGame.TeamColor pieceColor, ChessPiece.PieceType type) {
+        if (pieceColor == null || type == null) {
+            return new ChessPiece(pieceColor, type);
+        }
+        return PIECES[Bitboards.pieceIndex(pieceColor, type)];
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(color, type);
@@ -74,27 +116,24 @@ public class ChessPiece {
      * @return Collection of valid moves
      */
     public Collection<ChessMove> pieceMoves(ChessBoard board, ChessPosition myPosition) {
-
-        MoveCalculator moves = switch (type) {
-            case BISHOP -> new BishopMoveGenerator();
-            case QUEEN -> new QueenMoveGenerator();
-            case ROOK -> new RookMoveGenerator();
-            case KING -> new KingMoveGenerator();
-            case KNIGHT -> new KnightMoveGenerator();
-            case PAWN -> new PawnMoveGenerator();
-            default -> throw new UnsupportedOperationException("MoveCalculator not implemented for " + type);
-        };
-
-        return moves.possibleMoves(board, myPosition);
+        return calculator().possibleMoves(board, myPosition);
     }
 
     /**
-     * Checks if a position is on the board or not
-     * @param row position to check
-     * @param col position to check
-     * @return bool indicating whether position is in bounds
+     * Writes the moves this piece can make from a square into a buffer as
+     * {@link PackedMove} ints, without leaving the king in check filtered out
+     *
+     * @param board board the piece is on
+     * @param from square index of the piece
+     * @param moves buffer with room for {@link MoveCalculator#MAX_PIECE_MOVES} more moves
+     * @param count number of moves already in the buffer
+     * @return number of moves in the buffer afterwards
      */
-    private boolean onTheBoard(int row, int col) {
-        return (row >= 1 && row <= 8 && col >= 1 && col <= 8);
+    public int pieceMoves(ChessBoard board, int from, int[] moves, int count) {
+        return calculator().possibleMoves(board, from, moves, count);
+    }
+
+    private MoveCalculator calculator() {
+        return CALCULATORS.get(type);
     }
 }
@@ -1,6 +1,6 @@
 package chess;
 
-import java.util.Objects;
+import com.google.gson.annotations.JsonAdapter;
 
 /**
  * Represents a single square position on a chess board
@@ -8,8 +8,18 @@ import java.util.Objects;
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
  */
+@JsonAdapter(ChessTypeAdapterFactory.class)
 public class ChessPosition {
 
+    // one shared instance per square, indexed like Bitboards
+    private static final ChessPosition[] SQUARES = new ChessPosition[64];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            SQUARES[square] = new ChessPosition(square / 8 + 1, square % 8 + 1);
+        }
+    }
+
     private final int row;
     private final int col;
 
@@ -18,6 +28,29 @@ public class ChessPosition {
         this.col = col;
     }
 
+    /**
+     * Returns the shared instance for a square instead of allocating one.
+     * Positions off the board are still created fresh.
+     *
+     * @param row 1 codes for the bottom row
+     * @param col 1 codes for the left column
+     * @return ChessPosition for the row and column
+     */
+    public static ChessPosition of(int row, int col) {
+        if (row < 1 || row > 8 || col < 1 || col > 8) {
+            return new ChessPosition(row, col);
+        }
+        return SQUARES[(row - 1) * 8 + (col - 1)];
+    }
+
+    /**
+     * @param square square index 0-63, a1 is 0 and h8 is 63
+     * @return shared ChessPosition for the square
+     */
+    static ChessPosition ofSquare(int square) {
+        return SQUARES[square];
+    }
+
     /**
      * @return which row this position is in
      * 1 codes for the bottom row
@@ -53,6 +86,7 @@ public class ChessPosition {
 
     @Override
     public int hashCode() {
-        return Objects.hash(row, col);
+        // same value as Objects.hash(row, col) without the varargs array
+        return 31 * (31 + row) + col;
     }
 }
@@ -0,0 +1,66 @@
+package chess;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Gson hook for the rules classes. The JSON shape is left to Gson's reflective
+ * adapter so stored games keep their format; this only restores the transient
+ * state that Gson does not know about once an object has been read, hands a
+ * game's repetition history over in both directions, and swaps positions,
+ * pieces and moves for their shared instances. Snapshots are the exception,
+ * written by {@link PositionSnapshotAdapter} in the shape of a game.
+ */
+final class ChessTypeAdapterFactory implements TypeAdapterFactory {
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        if (type.getRawType() == PositionSnapshot.class) {
+            return (TypeAdapter<T>) new PositionSnapshotAdapter(gson);
+        }
+        TypeAdapter<T> delegate = gson.getDelegateAdapter(this, type);
+
+        return new TypeAdapter<>() {
+            @Override
+            public void write(JsonWriter out, T value) throws IOException {
+                if (value instanceof ChessGame game) {
+                    game.storeHistory();
+                }
+                delegate.write(out, value);
+            }
+
+            @Override
+            public T read(JsonReader in) throws IOException {
+                T value = delegate.read(in);
+                if (value instanceof ChessBoard board) {
+                    board.reindex();
+                }
+                if (value instanceof ChessGame game) {
+                    game.restoreHistory();
+                }
+                return canonical(value);
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T canonical(T value) {
+        if (value instanceof ChessPosition position) {
+            return (T) ChessPosition.of(position.getRow(), position.getColumn());
+        }
+        if (value instanceof ChessPiece piece) {
+            return (T) ChessPiece.of(piece.getTeamColor(), piece.getPieceType());
+        }
+        if (value instanceof ChessMove move) {
+            return (T) ChessMove.of(move.getStartPosition(), move.getEndPosition(), move.getPromotionPiece());
+        }
+        return value;
+    }
+}
@@ -0,0 +1,326 @@
+package chess;
+
+import java.util.function.IntFunction;
+
+/**
+ * Forsyth-Edwards Notation for positions.
+ * <p>
+ * A FEN record is six space-separated fields: piece placement from row 8 down
+ * to row 1, side to move, castling rights, en passant target square, halfmove
+ * clock and fullmove number. EPD records stop after the first four fields and
+ * may carry operations after them, which are ignored here; the clocks then
+ * default to 0 and 1.
+ * <p>
+ * Parsing walks the text once, character by character, writing straight into
+ * an existing board so that loading many positions does not allocate.
+ */
+final class Fen {
+
+    private Fen() {
+    }
+
+    /**
+     * Replaces the game's position with the one described by a FEN or EPD record
+     *
+     * @throws IllegalArgumentException if the record is malformed, the game is
+     * left in an unspecified state
+     */
+    static void load(ChessGame game, CharSequence fen) {
+        ChessBoard board = game.getBoard();
+        board.clear();
+
+        int i = parsePlacement(board, fen, skipSpaces(fen, 0));
+
+        // side to move
+        i = skipSpaces(fen, i);
+        ChessGame.TeamColor turn = switch (charAt(fen, i++)) {
+            case 'w' -> ChessGame.TeamColor.WHITE;
+            case 'b' -> ChessGame.TeamColor.BLACK;
+            default -> throw invalid(fen, "side to move must be w or b");
+        };
+        i = endOfField(fen, i);
+
+        // castling rights
+        i = skipSpaces(fen, i);
+        int castlingRights = 0;
+        if (charAt(fen, i) == '-') {
+            i++;
+        } else {
+            for (; i < fen.length() && fen.charAt(i) != ' '; i++) {
+                castlingRights |= switch (fen.charAt(i)) {
+                    case 'K' -> LegalMoveGenerator.WHITE_KINGSIDE;
+                    case 'Q' -> LegalMoveGenerator.WHITE_QUEENSIDE;
+                    case 'k' -> LegalMoveGenerator.BLACK_KINGSIDE;
+                    case 'q' -> LegalMoveGenerator.BLACK_QUEENSIDE;
+                    default -> throw invalid(fen, "unknown castling right '" + fen.charAt(i) + "'");
+                };
+            }
+        }
+        i = endOfField(fen, i);
+
+        // en passant target, behind a pawn of the side that just moved
+        i = skipSpaces(fen, i);
+        if (charAt(fen, i) == '-') {
+            i++;
+        } else {
+            int col = charAt(fen, i++) - 'a' + 1;
+            int row = charAt(fen, i++) - '0';
+            if (col < 1 || col > 8 || row != (turn == ChessGame.TeamColor.WHITE ? 6 : 3)) {
+                throw invalid(fen, "bad en passant square");
+            }
+            board.setEnPassantTgtSquare(ChessPosition.of(row, col));
+        }
+        i = endOfField(fen, i);
+
+        // clocks are optional, anything else after the fourth field is an EPD operation
+        int halfmoveClock = 0;
+        int fullmoveNumber = 1;
+        i = skipSpaces(fen, i);
+        if (i < fen.length() && isDigit(fen.charAt(i))) {
+            int end = endOfNumber(fen, i);
+            halfmoveClock = parseNumber(fen, i, end);
+            i = skipSpaces(fen, endOfField(fen, end));
+
+            if (i < fen.length() && isDigit(fen.charAt(i))) {
+                end = endOfNumber(fen, i);
+                fullmoveNumber = parseNumber(fen, i, end);
+                endOfField(fen, end);
+                if (fullmoveNumber < 1) {
+                    throw invalid(fen, "fullmove number starts at 1");
+                }
+            }
+        }
+
+        game.setPosition(turn, castlingRights, halfmoveClock, fullmoveNumber);
+    }
+
+    /**
+     * Fills an empty board from the piece placement field
+     *
+     * @return index just past the field
+     */
+    static int parsePlacement(ChessBoard board, CharSequence fen, int i) {
+        int row = 8;
+        int col = 1;
+        for (; i < fen.length(); i++) {
+            char c = fen.charAt(i);
+            if (c == ' ') {
+                break;
+            }
+            if (c == '/') {
+                if (col != 9 || row == 1) {
+                    throw invalid(fen, "row " + row + " does not have 8 squares");
+                }
+                row--;
+                col = 1;
+            } else if (c >= '1' && c <= '8') {
+                col += c - '0';
+            } else {
+                ChessPiece piece = piece(c);
+                if (piece == null || col > 8) {
+                    throw invalid(fen, "unexpected '" + c + "' in row " + row);
+                }
+                board.put(Bitboards.square(row, col++), piece);
+            }
+            if (col > 9) {
+                throw invalid(fen, "row " + row + " has more than 8 squares");
+            }
+        }
+        if (row != 1 || col != 9) {
+            throw invalid(fen, "piece placement does not cover the board");
+        }
+        return i;
+    }
+
+    /**
+     * @return FEN record of the game's position
+     */
+    static String format(ChessGame game, int castlingRights, int halfmoveClock, int fullmoveNumber) {
+        ChessBoard board = game.getBoard();
+        StringBuilder fen = new StringBuilder(90);
+        appendPlacement(board::getPiece, fen);
+        appendState(fen, game.getTeamTurn(), castlingRights & possibleCastlingRights(board),
+                board.getEnPassantTgtSquare(), halfmoveClock, fullmoveNumber);
+        return fen.toString();
+    }
+
+    /**
+     * @return FEN record of the snapshot's position
+     */
+    static String format(PositionSnapshot snapshot) {
+        StringBuilder fen = new StringBuilder(90);
+        appendPlacement(snapshot::getPiece, fen);
+        appendState(fen, snapshot.getTeamTurn(), snapshot.castlingRights(), snapshot.getEnPassantTarget(),
+                snapshot.getHalfmoveClock(), snapshot.getFullmoveNumber());
+        return fen.toString();
+    }
+
+    /**
+     * Writes the five fields after the placement
+     *
+     * @param rights castling rights, already limited to kings and rooks still at home
+     */
+    private static void appendState(StringBuilder fen, ChessGame.TeamColor turn, int rights,
+                                    ChessPosition enPassant, int halfmoveClock, int fullmoveNumber) {
+        fen.append(turn == ChessGame.TeamColor.WHITE ? " w " : " b ");
+
+        if (rights == 0) {
+            fen.append('-');
+        } else {
+            if ((rights & LegalMoveGenerator.WHITE_KINGSIDE) != 0) {
+                fen.append('K');
+            }
+            if ((rights & LegalMoveGenerator.WHITE_QUEENSIDE) != 0) {
+                fen.append('Q');
+            }
+            if ((rights & LegalMoveGenerator.BLACK_KINGSIDE) != 0) {
+                fen.append('k');
+            }
+            if ((rights & LegalMoveGenerator.BLACK_QUEENSIDE) != 0) {
+                fen.append('q');
+            }
+        }
+
+        if (enPassant == null) {
+            fen.append(" -");
+        } else {
+            fen.append(' ').append((char) ('a' + enPassant.getColumn() - 1)).append(enPassant.getRow());
+        }
+
+        fen.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+    }
+
+    /**
+     * @param pieces piece on each square index, null for an empty square
+     */
+    static void appendPlacement(IntFunction<ChessPiece> pieces, StringBuilder fen) {
+        for (int row = 8; row >= 1; row--) {
+            int empty = 0;
+            for (int col = 1; col <= 8; col++) {
+                ChessPiece piece = pieces.apply(Bitboards.square(row, col));
+                if (piece == null) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append((char) ('0' + empty));
+                    empty = 0;
+                }
+                fen.append(symbol(piece));
+            }
+            if (empty > 0) {
+                fen.append((char) ('0' + empty));
+            }
+            if (row > 1) {
+                fen.append('/');
+            }
+        }
+    }
+
+    /**
+     * @return the castling rights whose king and rook are still at home, a
+     * right only shows in a record while that holds
+     */
+    static int possibleCastlingRights(ChessBoard board) {
+        int rights = 0;
+        if (isAt(board, 4, ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING)) {
+            rights |= isAt(board, 7, ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK)
+                    ? LegalMoveGenerator.WHITE_KINGSIDE : 0;
+            rights |= isAt(board, 0, ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK)
+                    ? LegalMoveGenerator.WHITE_QUEENSIDE : 0;
+        }
+        if (isAt(board, 60, ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING)) {
+            rights |= isAt(board, 63, ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK)
+                    ? LegalMoveGenerator.BLACK_KINGSIDE : 0;
+            rights |= isAt(board, 56, ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK)
+                    ? LegalMoveGenerator.BLACK_QUEENSIDE : 0;
+        }
+        return rights;
+    }
+
+    private static boolean isAt(ChessBoard board, int square, ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return (board.getBitboard(color, type) & Bitboards.bit(square)) != 0;
+    }
+
+    /**
+     * @return the piece for a FEN letter, uppercase for WHITE, or null
+     */
+    static ChessPiece piece(char c) {
+        ChessGame.TeamColor color = Character.isUpperCase(c) ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+        ChessPiece.PieceType type = switch (Character.toLowerCase(c)) {
+            case 'k' -> ChessPiece.PieceType.KING;
+            case 'q' -> ChessPiece.PieceType.QUEEN;
+            case 'r' -> ChessPiece.PieceType.ROOK;
+            case 'b' -> ChessPiece.PieceType.BISHOP;
+            case 'n' -> ChessPiece.PieceType.KNIGHT;
+            case 'p' -> ChessPiece.PieceType.PAWN;
+            default -> null;
+        };
+        return type == null ? null : ChessPiece.of(color, type);
+    }
+
+    /**
+     * @return FEN letter of a piece, uppercase for WHITE
+     */
+    static char symbol(ChessPiece piece) {
+        char c = switch (piece.getPieceType()) {
+            case KING -> 'k';
+            case QUEEN -> 'q';
+            case ROOK -> 'r';
+            case BISHOP -> 'b';
+            case KNIGHT -> 'n';
+            case PAWN -> 'p';
+        };
+        return piece.getTeamColor() == ChessGame.TeamColor.WHITE ? Character.toUpperCase(c) : c;
+    }
+
+    private static int skipSpaces(CharSequence fen, int i) {
+        while (i < fen.length() && fen.charAt(i) == ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Fields are separated by spaces, anything else left in a field is an error
+     */
+    private static int endOfField(CharSequence fen, int i) {
+        if (i < fen.length() && fen.charAt(i) != ' ') {
+            throw invalid(fen, "unexpected '" + fen.charAt(i) + "'");
+        }
+        return i;
+    }
+
+    private static char charAt(CharSequence fen, int i) {
+        if (i >= fen.length()) {
+            throw invalid(fen, "record ends early");
+        }
+        return fen.charAt(i);
+    }
+
+    private static int endOfNumber(CharSequence fen, int i) {
+        while (i < fen.length() && isDigit(fen.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int parseNumber(CharSequence fen, int start, int end) {
+        if (end - start > 6) {
+            throw invalid(fen, "move counter out of range");
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            value = value * 10 + (fen.charAt(i) - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static IllegalArgumentException invalid(CharSequence fen, String reason) {
+        return new IllegalArgumentException("Invalid FEN \"" + fen + "\": " + reason);
+    }
+}
@@ -0,0 +1,339 @@
+package chess;
+
+/**
+ * Generates strictly legal moves without playing them out.
+ * <p>
+ * {@link #prepare} looks at the position once from the king's point of view:
+ * which enemy pieces give check, and which friendly pieces are pinned against
+ * the king and along which line. Every later move is then legal if it lands on
+ * the check mask (capturing the checker or blocking it) and, for a pinned
+ * piece, stays on its pin line. King moves are tested against enemy attacks
+ * with the king lifted off the board so it cannot hide behind itself. The only
+ * move that needs a full look is en passant, which removes two pieces from a
+ * line at once.
+ */
+final class LegalMoveGenerator {
+
+    // castling rights as bits, in the order of ChessGame.castlingRights
+    static final int WHITE_KINGSIDE = 1;
+    static final int WHITE_QUEENSIDE = 1 << 1;
+    static final int BLACK_KINGSIDE = 1 << 2;
+    static final int BLACK_QUEENSIDE = 1 << 3;
+
+    private ChessBoard board;
+    private ChessGame.TeamColor team;
+    private ChessGame.TeamColor enemy;
+    private int castlingRights;
+
+    private int kingSquare;
+    private long friendly;
+    private long enemies;
+    private long enemyPawns;
+    private long enemyKnights;
+    private long enemyRookLike;
+    private long enemyBishopLike;
+
+    private long checkers;
+    private long checkMask;
+    private long pinned;
+
+    // line each pinned piece may still move along, indexed by its square
+    private final long[] pinLines = new long[64];
+
+    // room for the kingside and queenside castle when checking a single king move
+    private final int[] castles = new int[2];
+
+    /**
+     * Works out checks and pins for a team. Has to be called again after the
+     * board changes.
+     *
+     * @param board board to generate on
+     * @param team team to generate moves for
+     * @param castlingRights castling the team's king and rooks have not yet given up
+     */
+    void prepare(ChessBoard board, ChessGame.TeamColor team, int castlingRights) {
+        this.board = board;
+        this.team = team;
+        this.enemy = team == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        this.castlingRights = castlingRights;
+
+        friendly = board.getTeamBitboard(team);
+        enemies = board.getTeamBitboard(enemy);
+        enemyPawns = board.getBitboard(enemy, ChessPiece.PieceType.PAWN);
+        enemyKnights = board.getBitboard(enemy, ChessPiece.PieceType.KNIGHT);
+        long enemyQueens = board.getBitboard(enemy, ChessPiece.PieceType.QUEEN);
+        enemyRookLike = board.getBitboard(enemy, ChessPiece.PieceType.ROOK) | enemyQueens;
+        enemyBishopLike = board.getBitboard(enemy, ChessPiece.PieceType.BISHOP) | enemyQueens;
+
+        checkers = 0L;
+        checkMask = ~0L;
+        pinned = 0L;
+
+        kingSquare = board.getKingSquare(team);
+        if (kingSquare < 0) {
+            return; // boards set up without a king have nothing to protect
+        }
+        long occupied = board.getOccupancy();
+        checkers = board.attackersTo(kingSquare, enemy, occupied);
+
+        // sliders looking at the king through nothing but friendly pieces
+        long snipers = (Bitboards.rookAttacks(kingSquare, enemies) & enemyRookLike)
+                | (Bitboards.bishopAttacks(kingSquare, enemies) & enemyBishopLike);
+        while (snipers != 0) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+
+            long blockers = Bitboards.between(kingSquare, sniper) & occupied;
+            if (blockers != 0 && (blockers & (blockers - 1)) == 0) {
+                // exactly one piece in the way, and the snipers only see through friendly ones
+                pinned |= blockers;
+                pinLines[Long.numberOfTrailingZeros(blockers)] = Bitboards.between(kingSquare, sniper)
+                        | Bitboards.bit(sniper);
+            }
+        }
+
+        if (checkers != 0) {
+            int checker = Long.numberOfTrailingZeros(checkers);
+            // a double check leaves no square to block on, only the king can move
+            checkMask = (checkers & (checkers - 1)) == 0
+                    ? Bitboards.between(kingSquare, checker) | checkers
+                    : 0L;
+        }
+    }
+
+    /**
+     * @return true if the prepared team's king is attacked
+     */
+    boolean inCheck() {
+        return checkers != 0;
+    }
+
+    /**
+     * Writes every legal move of the prepared team into a buffer
+     *
+     * @param moves buffer with room for {@link ChessGame#MAX_MOVES} more moves
+     * @param count number of moves already in the buffer
+     * @return number of moves in the buffer afterwards
+     */
+    int generate(int[] moves, int count) {
+        long pieces = friendly;
+        while (pieces != 0) {
+            int square = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            count = generate(square, moves, count);
+        }
+        return count;
+    }
+
+    /**
+     * Writes the legal moves of the prepared team's piece on one square into a buffer
+     *
+     * @param from square of the piece, moves of the other team are never legal
+     * @param moves buffer with room for {@link MoveCalculator#MAX_PIECE_MOVES} more moves
+     * @param count number of moves already in the buffer
+     * @return number of moves in the buffer afterwards
+     */
+    int generate(int from, int[] moves, int count) {
+        if ((friendly & Bitboards.bit(from)) == 0) {
+            return count;
+        }
+        if (from == kingSquare) {
+            return generateKingMoves(moves, count);
+        }
+        if (checkMask == 0) {
+            return count; // double check
+        }
+
+        long allowed = checkMask;
+        if ((pinned & Bitboards.bit(from)) != 0) {
+            allowed &= pinLines[from];
+        }
+
+        // pseudo-legal moves from the piece's own generator, kept only if they land on allowed squares
+        int start = count;
+        int end = board.getPiece(from).pieceMoves(board, from, moves, count);
+        int kept = start;
+        for (int i = start; i < end; i++) {
+            int move = moves[i];
+            boolean legal = (move & PackedMove.EN_PASSANT) != 0
+                    ? enPassantIsLegal(from, PackedMove.to(move))
+                    : (allowed & Bitboards.bit(PackedMove.to(move))) != 0;
+            if (legal) {
+                moves[kept++] = move;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Tests one move of the prepared team without generating any others:
+     * the piece's geometry and blockers, then the same check and pin masks
+     * the generator uses. A pawn reaching the last row must name a promotion
+     * piece and no other move may.
+     *
+     * @param from starting square
+     * @param to destination square
+     * @param promotion piece to promote to, or null
+     * @return true if the move is legal
+     */
+    boolean isLegal(int from, int to, ChessPiece.PieceType promotion) {
+        long fromBit = Bitboards.bit(from);
+        long toBit = Bitboards.bit(to);
+        if ((friendly & fromBit) == 0 || (friendly & toBit) != 0) {
+            return false;
+        }
+        ChessPiece piece = board.getPiece(from);
+        boolean pawn = piece.getPieceType() == ChessPiece.PieceType.PAWN;
+
+        boolean lastRow = (toBit & (Bitboards.RANK_1 | Bitboards.RANK_8)) != 0;
+        if (pawn && lastRow) {
+            if (promotion == null || promotion == ChessPiece.PieceType.KING || promotion == ChessPiece.PieceType.PAWN) {
+                return false;
+            }
+        } else if (promotion != null) {
+            return false;
+        }
+
+        if (from == kingSquare) {
+            return isLegalKingMove(to);
+        }
+        if (checkMask == 0) {
+            return false; // double check
+        }
+
+        long allowed = checkMask;
+        if ((pinned & fromBit) != 0) {
+            allowed &= pinLines[from];
+        }
+
+        if (!pawn) {
+            return (Bitboards.attacks(piece, from, board.getOccupancy()) & toBit & allowed) != 0;
+        }
+
+        boolean white = team == ChessGame.TeamColor.WHITE;
+        int forward = white ? 8 : -8;
+        long empty = ~board.getOccupancy();
+
+        if (to == from + forward) {
+            return (empty & toBit & allowed) != 0;
+        }
+        if (to == from + 2 * forward) {
+            return (fromBit & (white ? Bitboards.RANK_2 : Bitboards.RANK_7)) != 0
+                    && (empty & Bitboards.bit(from + forward)) != 0
+                    && (empty & toBit & allowed) != 0;
+        }
+        if ((Bitboards.pawnAttacksFrom(team, from) & toBit) == 0) {
+            return false;
+        }
+        if ((enemies & toBit) != 0) {
+            return (allowed & toBit) != 0;
+        }
+
+        // a diagonal step onto an empty square has to be en passant
+        ChessPosition enPassant = board.getEnPassantTgtSquare();
+        return enPassant != null
+                && Bitboards.square(enPassant) == to
+                && (toBit & (white ? Bitboards.RANK_6 : Bitboards.RANK_3)) != 0
+                && enPassantIsLegal(from, to);
+    }
+
+    private boolean isLegalKingMove(int to) {
+        // castling is the only two-column king move, leave it to the castling rules
+        if (Math.abs(to - kingSquare) == 2) {
+            int count = checkers == 0 ? generateCastlingMoves(castles, 0) : 0;
+            for (int i = 0; i < count; i++) {
+                if (PackedMove.to(castles[i]) == to) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return (Bitboards.kingAttacksFrom(kingSquare) & Bitboards.bit(to)) != 0
+                && !isAttacked(to, board.getOccupancy() & ~Bitboards.bit(kingSquare));
+    }
+
+    private int generateKingMoves(int[] moves, int count) {
+        // lift the king off the board, a slider's ray would otherwise stop on it
+        long occupied = board.getOccupancy() & ~Bitboards.bit(kingSquare);
+
+        long targets = Bitboards.kingAttacksFrom(kingSquare) & ~friendly;
+        long safe = 0L;
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            if (!isAttacked(to, occupied)) {
+                safe |= Bitboards.bit(to);
+            }
+        }
+        count = Bitboards.addMoves(kingSquare, safe, enemies, moves, count);
+
+        if (checkers == 0) {
+            count = generateCastlingMoves(moves, count);
+        }
+        return count;
+    }
+
+    private int generateCastlingMoves(int[] moves, int count) {
+        boolean white = team == ChessGame.TeamColor.WHITE;
+        int home = white ? 4 : 60; // king starts on column 5 of its back row
+        if (kingSquare != home) {
+            return count;
+        }
+        long occupied = board.getOccupancy();
+
+        // kingside castle, the king crosses f and lands on g
+        if ((castlingRights & (white ? WHITE_KINGSIDE : BLACK_KINGSIDE)) != 0 &&
+                isRookAt(home + 3) &&
+                (occupied & Bitboards.between(home, home + 3)) == 0 &&
+                !isAttacked(home + 1, occupied) &&
+                !isAttacked(home + 2, occupied)) {
+            moves[count++] = PackedMove.encode(home, home + 2, null, PackedMove.CASTLE);
+        }
+
+        // queenside castle, the king crosses d and lands on c, b only has to be empty
+        if ((castlingRights & (white ? WHITE_QUEENSIDE : BLACK_QUEENSIDE)) != 0 &&
+                isRookAt(home - 4) &&
+                (occupied & Bitboards.between(home, home - 4)) == 0 &&
+                !isAttacked(home - 1, occupied) &&
+                !isAttacked(home - 2, occupied)) {
+            moves[count++] = PackedMove.encode(home, home - 2, null, PackedMove.CASTLE);
+        }
+        return count;
+    }
+
+    /**
+     * A board set up by hand can be missing a rook even though it never moved
+     */
+    private boolean isRookAt(int square) {
+        return (board.getBitboard(team, ChessPiece.PieceType.ROOK) & Bitboards.bit(square)) != 0;
+    }
+
+    /**
+     * Taking en passant empties the capturing pawn's square and the captured
+     * pawn's square on the same rank, which can open a line to the king that
+     * neither pin nor check mask describes. The move is tested directly.
+     */
+    private boolean enPassantIsLegal(int from, int to) {
+        if (kingSquare < 0) {
+            return true;
+        }
+        int captured = (from & ~7) | (to & 7);
+        long occupied = (board.getOccupancy() & ~Bitboards.bit(from) & ~Bitboards.bit(captured))
+                | Bitboards.bit(to);
+
+        long remainingCheckers = checkers & ~Bitboards.bit(captured)
+                & (enemyPawns | enemyKnights);
+        return remainingCheckers == 0
+                && (Bitboards.rookAttacks(kingSquare, occupied) & enemyRookLike) == 0
+                && (Bitboards.bishopAttacks(kingSquare, occupied) & enemyBishopLike) == 0;
+    }
+
+    /**
+     * @param square square to test
+     * @param occupied occupancy to stop sliders with
+     * @return true if any enemy piece attacks the square
+     */
+    private boolean isAttacked(int square, long occupied) {
+        return board.attackersTo(square, enemy, occupied) != 0;
+    }
+}
@@ -0,0 +1,69 @@
+package chess;
+
+import java.util.ConcurrentModificationException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Hands out a team's legal moves one at a time. Checks and pins are worked
+ * out when the spliterator is created, but each piece's moves are only
+ * generated once the previous piece's moves have all been consumed, so a
+ * caller that stops early never pays for the rest of the board.
+ * <p>
+ * The board must not change while moves are being taken; doing so fails with
+ * a {@link ConcurrentModificationException} on the next move.
+ */
+final class LegalMoveSpliterator implements Spliterator<ChessMove> {
+
+    private final ChessBoard board;
+    private final long version;
+    private final LegalMoveGenerator generator = new LegalMoveGenerator();
+
+    // squares whose pieces have not been generated yet
+    private long pieces;
+
+    // moves of the current piece and how many of them were handed out
+    private final int[] moves = new int[MoveCalculator.MAX_PIECE_MOVES];
+    private int next = 0;
+    private int count = 0;
+
+    LegalMoveSpliterator(ChessBoard board, ChessGame.TeamColor team, int castlingRights) {
+        this.board = board;
+        this.version = board.getVersion();
+        this.pieces = board.getTeamBitboard(team);
+        generator.prepare(board, team, castlingRights);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super ChessMove> action) {
+        if (board.getVersion() != version) {
+            throw new ConcurrentModificationException("Board changed while iterating legal moves");
+        }
+        while (next == count) {
+            if (pieces == 0) {
+                return false;
+            }
+            int square = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            next = 0;
+            count = generator.generate(square, moves, 0);
+        }
+        action.accept(PackedMove.toChessMove(moves[next++]));
+        return true;
+    }
+
+    @Override
+    public Spliterator<ChessMove> trySplit() {
+        return null; // the whole board is cheaper to walk than to split
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE; // unknown until generated
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | DISTINCT | NONNULL;
+    }
+}
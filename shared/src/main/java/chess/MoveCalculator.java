@@ -1,8 +1,33 @@
 package chess;
 
+import java.util.ArrayList;
 import java.util.Collection;
 
 public interface MoveCalculator {
-    Collection<ChessMove> possibleMoves(ChessBoard board, ChessPosition from);
-    boolean onTheBoard(int row, int col);
+
+    // most moves a single piece can have: a queen in the middle of an open board
+    int MAX_PIECE_MOVES = 32;
+
+    default Collection<ChessMove> possibleMoves(ChessBoard board, ChessPosition from) {
+        int[] moves = new int[MAX_PIECE_MOVES];
+        int count = possibleMoves(board, Bitboards.square(from), moves, 0);
+
+        Collection<ChessMove> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(PackedMove.toChessMove(moves[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Writes the piece's moves into a buffer as {@link PackedMove} ints,
+     * ignoring whether they leave the king in check
+     *
+     * @param board board holding the piece
+     * @param from square of the piece to move
+     * @param moves buffer to write into
+     * @param count number of moves already in the buffer
+     * @return number of moves in the buffer afterwards
+     */
+    int possibleMoves(ChessBoard board, int from, int[] moves, int count);
 }
@@ -0,0 +1,27 @@
+package chess;
+
+/**
+ * Everything {@link ChessGame} needs to take back one move it made in place.
+ * Instances are pooled on the game's undo stack and overwritten on reuse, so
+ * making and unmaking a move does not allocate.
+ */
+final class MoveUndo {
+    int from;
+    int to;
+
+    // piece that left the starting square, before any promotion
+    ChessPiece moved;
+
+    // captured piece and where it stood, which differs from 'to' for en passant
+    ChessPiece captured;
+    int capturedSquare;
+
+    // rook squares when the move was a castle, otherwise -1
+    int rookFrom;
+    int rookTo;
+
+    // state from before the move
+    ChessPosition enPassantTgtSquare;
+    int castlingFlags;
+    int halfmoveClock;
+}
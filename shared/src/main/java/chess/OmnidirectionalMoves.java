@@ -1,33 +1,30 @@
 package chess;
 
-import java.util.ArrayList;
-import java.util.Collection;
-
 final class OmnidirectionalMoves {
     private OmnidirectionalMoves() {}
 
-    static Collection<ChessMove> generate(ChessBoard board,
-                                          ChessPosition from,
-                                          ChessGame.TeamColor color,
-                                          int[][] directions,
-                                          int maxSteps) {
-        Collection<ChessMove> moves = new ArrayList<>();
+    /**
+     * Walks each direction from a square until the edge of the board, a blocker,
+     * or maxSteps squares have been visited
+     *
+     * @return bitboard of every visited square, including the blocking squares
+     */
+    static long rays(int square,
+                     long occupied,
+                     int[][] directions,
+                     int maxSteps) {
+        long attacks = 0L;
 
         for (int[] dir : directions) {
-            int row = from.getRow() + dir[0];
-            int col = from.getColumn() + dir[1];
+            int row = Bitboards.row(square) + dir[0];
+            int col = Bitboards.column(square) + dir[1];
             int steps = 0;
 
             while (onBoard(row, col) && steps < maxSteps) {
-                ChessPosition to = new ChessPosition(row, col);
-                ChessPiece target = board.getPiece(to);
+                long to = Bitboards.bit(Bitboards.square(row, col));
+                attacks |= to;
 
-                if (target == null) {
-                    moves.add(new ChessMove(from, to, null));
-                } else {
-                    if (target.getTeamColor() != color) {
-                        moves.add(new ChessMove(from, to, null));
-                    }
+                if ((occupied & to) != 0) {
                     break; // blocked by piece
                 }
 
@@ -36,7 +33,7 @@ final class OmnidirectionalMoves {
                 steps++;
             }
         }
-        return moves;
+        return attacks;
     }
 
     static boolean onBoard(int row, int col) {
@@ -0,0 +1,105 @@
+package chess;
+
+/**
+ * Encodes a move in a single int so move lists can live in reusable
+ * {@code int[]} buffers instead of collections of {@link ChessMove} objects.
+ * <pre>
+ * bits  0-5   starting square
+ * bits  6-11  ending square
+ * bits 12-14  promotion piece, PieceType ordinal + 1, or 0 for none
+ * bits 15-18  flags describing the move
+ * </pre>
+ * The low 15 bits identify a move on their own and are all a {@link ChessMove}
+ * carries. The flags are filled in by the move generators as hints for callers
+ * such as move ordering; playing a move never depends on them.
+ */
+public final class PackedMove {
+
+    public static final int NONE = 0;
+
+    public static final int CAPTURE = 1 << 15;
+    public static final int DOUBLE_PUSH = 1 << 16;
+    public static final int EN_PASSANT = 1 << 17;
+    public static final int CASTLE = 1 << 18;
+
+    private static final int MOVE_MASK = (1 << 15) - 1;
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+
+    private PackedMove() {}
+
+    public static int encode(int from, int to) {
+        return from | (to << 6);
+    }
+
+    /**
+     * @param from starting square
+     * @param to ending square
+     * @param promotion piece to promote to, or null
+     * @param flags any of the flag constants or'd together
+     * @return packed move
+     */
+    public static int encode(int from, int to, ChessPiece.PieceType promotion, int flags) {
+        int promotionBits = promotion == null ? 0 : (promotion.ordinal() + 1) << 12;
+        return from | (to << 6) | promotionBits | flags;
+    }
+
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    /**
+     * @return the promotion piece type, or null if the move does not promote
+     */
+    public static ChessPiece.PieceType promotion(int move) {
+        int bits = (move >>> 12) & 7;
+        return bits == 0 ? null : TYPES[bits - 1];
+    }
+
+    public static boolean isPromotion(int move) {
+        return (move & (7 << 12)) != 0;
+    }
+
+    public static boolean isCapture(int move) {
+        return (move & CAPTURE) != 0;
+    }
+
+    /**
+     * @return the move with its flags cleared, for comparing moves that came
+     * from different sources
+     */
+    public static int withoutFlags(int move) {
+        return move & MOVE_MASK;
+    }
+
+    public static int fromChessMove(ChessMove move) {
+        return encode(Bitboards.square(move.getStartPosition()), Bitboards.square(move.getEndPosition()),
+                move.getPromotionPiece(), 0);
+    }
+
+    public static ChessMove toChessMove(int move) {
+        return ChessMove.interned(move);
+    }
+
+    /**
+     * @return the move in coordinate notation, such as e7e8q
+     */
+    public static String toString(int move) {
+        StringBuilder text = new StringBuilder(5)
+                .append((char) ('a' + (from(move) & 7))).append((char) ('1' + (from(move) >>> 3)))
+                .append((char) ('a' + (to(move) & 7))).append((char) ('1' + (to(move) >>> 3)));
+        ChessPiece.PieceType promotion = promotion(move);
+        if (promotion != null) {
+            text.append(switch (promotion) {
+                case QUEEN -> 'q';
+                case ROOK -> 'r';
+                case BISHOP -> 'b';
+                default -> 'n';
+            });
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,171 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Perft spread over a fork-join pool for deep regression runs. The tree is
+ * split at the root, and optionally again one ply below it, into one task per
+ * move, each working on its own copy of the game. Below the split every
+ * thread searches in place like {@link ChessGame#perft}, and all of them share
+ * a {@link PerftCache}, so a subtree reached by transposition, in any thread,
+ * is counted once.
+ */
+public class ParallelPerft implements AutoCloseable {
+
+    // subtrees this shallow are cheaper to count than to look up
+    private static final int MIN_CACHED_DEPTH = 2;
+
+    private final ForkJoinPool pool;
+    private final PerftCache cache;
+    private final int splitPlies;
+
+    /**
+     * @param threads number of worker threads
+     * @param cacheSizeLog2 log2 of the number of cache entries, each taking 16 bytes
+     * @param splitPlies 1 to split at the root only, 2 to split the replies too
+     */
+    public ParallelPerft(int threads, int cacheSizeLog2, int splitPlies) {
+        if (splitPlies < 1 || splitPlies > 2) {
+            throw new IllegalArgumentException("Can only split at 1 or 2 plies");
+        }
+        this.pool = new ForkJoinPool(threads);
+        this.cache = new PerftCache(cacheSizeLog2);
+        this.splitPlies = splitPlies;
+    }
+
+    /**
+     * Node count and timing of one run
+     *
+     * @param threads worker threads used
+     * @param nodes leaf nodes counted
+     * @param nanos wall clock time taken
+     */
+    public record Result(int threads, long nodes, long nanos) {
+
+        public long nodesPerSecond() {
+            return nanos == 0 ? 0 : nodes * 1_000_000_000L / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%2d threads  %,15d nodes  %8.3f s  %,13d nodes/s",
+                    threads, nodes, nanos / 1e9, nodesPerSecond());
+        }
+    }
+
+    /**
+     * Counts the leaf nodes below the game's position. Counts cached by
+     * earlier runs on this instance are reused.
+     *
+     * @param game position to count from, left unchanged
+     * @param depth number of plies to search
+     * @return total nodes and the time taken
+     */
+    public Result run(ChessGame game, int depth) {
+        long start = System.nanoTime();
+        long nodes = depth <= 0 ? 1 : pool.invoke(new PerftTask(game.copy(), depth, splitPlies));
+        return new Result(pool.getParallelism(), nodes, System.nanoTime() - start);
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+
+    /**
+     * Runs the same perft at 1, 2, 4 ... threads up to the given count, each
+     * with an empty cache of its own, to show how the search scales
+     *
+     * @return one result per thread count, in increasing order
+     */
+    public static List<Result> scaling(ChessGame game, int depth, int maxThreads, int cacheSizeLog2) {
+        List<Result> results = new ArrayList<>();
+        for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+            try (ParallelPerft perft = new ParallelPerft(threads, cacheSizeLog2, 2)) {
+                results.add(perft.run(game, depth));
+            }
+            if (threads == maxThreads) {
+                return results;
+            }
+        }
+    }
+
+    /**
+     * Prints a scaling table: {@code ParallelPerft depth [threads] [fen]}
+     */
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        ChessGame game = args.length > 2 ? ChessGame.fromFen(String.join(" ", List.of(args).subList(2, args.length)))
+                : new ChessGame();
+
+        System.out.println("perft " + depth + " of " + game.toFen());
+        List<Result> results = scaling(game, depth, threads, 24);
+        for (Result result : results) {
+            System.out.printf("%s  %5.2fx%n", result, (double) results.get(0).nanos() / result.nanos());
+        }
+    }
+
+    private final class PerftTask extends RecursiveTask<Long> {
+
+        private final ChessGame game;
+        private final int depth;
+        private final int splitsLeft;
+
+        private PerftTask(ChessGame game, int depth, int splitsLeft) {
+            this.game = game;
+            this.depth = depth;
+            this.splitsLeft = splitsLeft;
+        }
+
+        @Override
+        protected Long compute() {
+            // too little work below here to be worth a task per move
+            if (splitsLeft == 0 || depth <= MIN_CACHED_DEPTH) {
+                return perft(game, depth, new int[ChessGame.MAX_MOVES * depth], 0);
+            }
+
+            int[] moves = new int[ChessGame.MAX_MOVES];
+            int count = game.legalMoves(game.getTeamTurn(), moves, 0);
+            List<PerftTask> tasks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                game.doMove(moves[i]);
+                tasks.add(new PerftTask(game.copy(), depth - 1, splitsLeft - 1));
+                game.undoMove();
+            }
+
+            long nodes = 0;
+            for (PerftTask task : ForkJoinTask.invokeAll(tasks)) {
+                nodes += task.join();
+            }
+            return nodes;
+        }
+
+        private long perft(ChessGame game, int depth, int[] moves, int offset) {
+            if (depth == 1) {
+                return game.legalMoves(game.getTeamTurn(), moves, offset) - offset;
+            }
+
+            // a hit skips move generation as well as the subtree
+            long key = game.zobristKey();
+            long cached = cache.probe(key, depth);
+            if (cached >= 0) {
+                return cached;
+            }
+
+            int end = game.legalMoves(game.getTeamTurn(), moves, offset);
+            long nodes = 0;
+            for (int i = offset; i < end; i++) {
+                game.doMove(moves[i]);
+                nodes += perft(game, depth - 1, moves, end);
+                game.undoMove();
+            }
+            cache.store(key, depth, nodes);
+            return nodes;
+        }
+    }
+}
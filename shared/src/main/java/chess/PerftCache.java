@@ -0,0 +1,56 @@
+package chess;
+
+/**
+ * Lock-free table of perft subtree counts keyed by position and depth, shared
+ * by all the threads of a {@link ParallelPerft} run.
+ * <p>
+ * Each slot is two longs: the key xor'd with the count, then the count. Slots
+ * are written without locks, so two threads storing into the same slot can
+ * leave one's key next to the other's count; the xor no longer gives back the
+ * key and the probe treats the slot as empty. A count is only ever returned
+ * for the position and depth it was stored for, barring a full 64-bit key
+ * collision.
+ */
+final class PerftCache {
+
+    // spreads the depths over the table so one position's depths don't share a slot
+    private static final long DEPTH_MIX = 0x9E3779B97F4A7C15L;
+
+    private final long[] slots;
+    private final int mask;
+
+    /**
+     * @param sizeLog2 log2 of the number of entries, each taking 16 bytes
+     */
+    PerftCache(int sizeLog2) {
+        if (sizeLog2 < 1 || sizeLog2 > 28) {
+            throw new IllegalArgumentException("Cache size out of range: 2^" + sizeLog2);
+        }
+        slots = new long[2 << sizeLog2];
+        mask = (1 << sizeLog2) - 1;
+    }
+
+    /**
+     * @return the stored count, or -1 if the table does not have it
+     */
+    long probe(long positionKey, int depth) {
+        long key = positionKey + depth * DEPTH_MIX;
+        int slot = index(key);
+        long nodes = slots[slot + 1];
+        return (slots[slot] ^ nodes) == key ? nodes : -1;
+    }
+
+    /**
+     * Stores a count, replacing whatever the slot held
+     */
+    void store(long positionKey, int depth, long nodes) {
+        long key = positionKey + depth * DEPTH_MIX;
+        int slot = index(key);
+        slots[slot] = key ^ nodes;
+        slots[slot + 1] = nodes;
+    }
+
+    private int index(long key) {
+        return ((int) (key ^ (key >>> 32)) & mask) << 1;
+    }
+}
@@ -0,0 +1,187 @@
+package chess;
+
+import com.google.gson.annotations.JsonAdapter;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * An immutable copy of a game's position, published by {@link ChessGame}
+ * after each move so other threads can read the position without locking
+ * while the game itself carries on changing.
+ * <p>
+ * Snapshots share structure: the pieces are held one row at a time, and a
+ * new snapshot only copies the rows the move changed, pointing at the
+ * previous snapshot's arrays for the rest. A quiet move copies one or two
+ * rows of eight references; the rest of the position is a handful of
+ * primitives. None of the arrays is ever written after construction, and
+ * none of them is handed out.
+ * <p>
+ * Besides the position a snapshot keeps the keys of the positions a
+ * repetition can still reach, those since the last capture or pawn move,
+ * so a game rebuilt from it still sees threefold repetition. It serializes
+ * to the same JSON as a {@link ChessGame}, so it can be sent in place of
+ * one without copying the game first.
+ */
+@JsonAdapter(ChessTypeAdapterFactory.class)
+public final class PositionSnapshot {
+
+    private final ChessPiece[][] rows;
+    private final long[] pieceBitboards;
+    private final ChessGame.TeamColor turn;
+    private final int castlingRights;
+    private final ChessPosition enPassant;
+    private final int halfmoveClock;
+    private final int fullmoveNumber;
+    private final long zobristKey;
+    private final boolean gameOver;
+    // oldest first, ending with this position's own key
+    private final long[] repetitionKeys;
+
+    /**
+     * @param previous earlier snapshot whose rows are reused wherever the
+     * board's rows still hold the same pieces, or null to copy every row
+     * @param castlingRights rights whose king and rook are still at home
+     * @param repetitionKeys keys since the last irreversible move, not copied, so never to be written again
+     */
+    PositionSnapshot(PositionSnapshot previous, ChessBoard board, ChessGame.TeamColor turn, int castlingRights,
+                     int halfmoveClock, int fullmoveNumber, long zobristKey, boolean gameOver,
+                     long[] repetitionKeys) {
+        this.rows = new ChessPiece[8][];
+        for (int row = 0; row < 8; row++) {
+            rows[row] = board.snapshotRow(row, previous == null ? null : previous.rows[row]);
+        }
+        this.pieceBitboards = board.copyBitboards();
+        this.turn = turn;
+        this.castlingRights = castlingRights;
+        this.enPassant = board.getEnPassantTgtSquare();
+        this.halfmoveClock = halfmoveClock;
+        this.fullmoveNumber = fullmoveNumber;
+        this.zobristKey = zobristKey;
+        this.gameOver = gameOver;
+        this.repetitionKeys = repetitionKeys;
+    }
+
+    /**
+     * @return piece at the position, or null if the square is empty
+     */
+    public ChessPiece getPiece(ChessPosition position) {
+        return rows[position.getRow() - 1][position.getColumn() - 1];
+    }
+
+    /**
+     * @param square square index, 0 for a1 up to 63 for h8
+     * @return piece on the square, or null if it is empty
+     */
+    public ChessPiece getPiece(int square) {
+        return rows[square >>> 3][square & 7];
+    }
+
+    /**
+     * @return bitboard of the squares holding this team's pieces of the given type
+     */
+    public long getBitboard(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return pieceBitboards[Bitboards.pieceIndex(color, type)];
+    }
+
+    public ChessGame.TeamColor getTeamTurn() {
+        return turn;
+    }
+
+    /**
+     * @return the square a pawn can be taken en passant on, or null
+     */
+    public ChessPosition getEnPassantTarget() {
+        return enPassant;
+    }
+
+    /**
+     * @return whether the team can still castle on that side at some point,
+     * not whether castling is legal right now
+     */
+    public boolean canCastle(ChessGame.TeamColor team, boolean kingside) {
+        int right = team == ChessGame.TeamColor.WHITE
+                ? (kingside ? LegalMoveGenerator.WHITE_KINGSIDE : LegalMoveGenerator.WHITE_QUEENSIDE)
+                : (kingside ? LegalMoveGenerator.BLACK_KINGSIDE : LegalMoveGenerator.BLACK_QUEENSIDE);
+        return (castlingRights & right) != 0;
+    }
+
+    int castlingRights() {
+        return castlingRights;
+    }
+
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    /**
+     * @return the game's Zobrist key at the time, see {@link ChessGame#zobristKey()}
+     */
+    public long zobristKey() {
+        return zobristKey;
+    }
+
+    /**
+     * @return whether the game had been ended, by resignation for example
+     */
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    /**
+     * @return how many keys of positions a repetition can still reach there are, this one included
+     */
+    int repetitionKeyCount() {
+        return repetitionKeys.length;
+    }
+
+    long repetitionKey(int index) {
+        return repetitionKeys[index];
+    }
+
+    /**
+     * @return FEN record of the position
+     */
+    public String toFen() {
+        return Fen.format(this);
+    }
+
+    /**
+     * @return a new game in this position, with the repetition history the snapshot kept
+     */
+    public ChessGame toGame() {
+        ChessGame game = ChessGame.fromFen(toFen());
+        game.setGameOver(gameOver);
+        game.restoreHistory(repetitionKeys);
+        return game;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PositionSnapshot that)) {
+            return false;
+        }
+        return zobristKey == that.zobristKey && halfmoveClock == that.halfmoveClock
+                && fullmoveNumber == that.fullmoveNumber && gameOver == that.gameOver
+                && castlingRights == that.castlingRights && turn == that.turn
+                && Objects.equals(enPassant, that.enPassant)
+                && Arrays.deepEquals(rows, that.rows);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(zobristKey);
+    }
+
+    @Override
+    public String toString() {
+        return toFen();
+    }
+}
@@ -0,0 +1,76 @@
+package chess;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Writes a {@link PositionSnapshot} as the JSON Gson's reflective adapter
+ * produces for a {@link ChessGame} in the same position, straight from the
+ * snapshot's immutable arrays, so a snapshot can go out wherever a game is
+ * expected without building the game. Reading parses a game and takes its
+ * snapshot.
+ */
+final class PositionSnapshotAdapter extends TypeAdapter<PositionSnapshot> {
+
+    private final TypeAdapter<ChessGame> games;
+    private final TypeAdapter<ChessPiece> pieces;
+    private final TypeAdapter<ChessPosition> positions;
+
+    PositionSnapshotAdapter(Gson gson) {
+        this.games = gson.getAdapter(ChessGame.class);
+        this.pieces = gson.getAdapter(ChessPiece.class);
+        this.positions = gson.getAdapter(ChessPosition.class);
+    }
+
+    @Override
+    public void write(JsonWriter out, PositionSnapshot snapshot) throws IOException {
+        if (snapshot == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("currentTurn").value(snapshot.getTeamTurn().name());
+
+        out.name("board").beginObject();
+        out.name("board").beginArray();
+        for (int row = 0; row < 8; row++) {
+            out.beginArray();
+            for (int col = 0; col < 8; col++) {
+                pieces.write(out, snapshot.getPiece(row * 8 + col));
+            }
+            out.endArray();
+        }
+        out.endArray();
+        out.name("enPassantTgtSquare");
+        positions.write(out, snapshot.getEnPassantTarget());
+        out.endObject();
+
+        // a game loaded from FEN keeps its kings unmoved and marks the rook of each lost right instead
+        out.name("whiteKingMoved").value(false);
+        out.name("blackKingMoved").value(false);
+        out.name("whiteKingsideRookMoved").value(!snapshot.canCastle(ChessGame.TeamColor.WHITE, true));
+        out.name("whiteQueensideRookMoved").value(!snapshot.canCastle(ChessGame.TeamColor.WHITE, false));
+        out.name("blackKingSideRookMoved").value(!snapshot.canCastle(ChessGame.TeamColor.BLACK, true));
+        out.name("blackQueenSideRookMoved").value(!snapshot.canCastle(ChessGame.TeamColor.BLACK, false));
+        out.name("gameOver").value(snapshot.isGameOver());
+        out.name("halfmoveClock").value(snapshot.getHalfmoveClock());
+        out.name("fullmoveNumber").value(snapshot.getFullmoveNumber());
+
+        out.name("repetitionKeys").beginArray();
+        for (int i = 0; i < snapshot.repetitionKeyCount(); i++) {
+            out.value(snapshot.repetitionKey(i));
+        }
+        out.endArray();
+        out.endObject();
+    }
+
+    @Override
+    public PositionSnapshot read(JsonReader in) throws IOException {
+        ChessGame game = games.read(in);
+        return game == null ? null : game.snapshot();
+    }
+}
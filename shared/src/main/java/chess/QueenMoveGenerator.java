@@ -1,30 +1,20 @@
 package chess;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-
 public class QueenMoveGenerator implements MoveCalculator {
 
-    private static final int[][] DIRECTIONS = {
-            {1,0},
-            {-1,0},
-            {0,1},
-            {0,-1},
-            {1,1},
-            {1,-1},
-            {-1,1},
-            {-1,-1}
-    };
-
     @Override
-    public Collection<ChessMove> possibleMoves(ChessBoard board, ChessPosition from) {
+    public int possibleMoves(ChessBoard board, int from, int[] moves, int count) {
         ChessPiece piece = board.getPiece(from);
-        return OmnidirectionalMoves.generate(board, from, piece.getTeamColor(), DIRECTIONS, 7);
-    }
 
-    @Override
-    public boolean onTheBoard(int row, int col) {
-        return (row >= 1 && row <= 8 && col >= 1 && col <= 8);
+        if (piece == null) {
+            return count;
+        }
+
+        long friendly = board.getTeamBitboard(piece.getTeamColor());
+
+        // rook and bishop slides combined
+        long targets = Bitboards.queenAttacks(from, board.getOccupancy()) & ~friendly;
+
+        return Bitboards.addMoves(from, targets, board.getOccupancy() & ~friendly, moves, count);
     }
 }
@@ -0,0 +1,67 @@
+package chess;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random keys for Zobrist hashing.
+ * <p>
+ * A position's key is the XOR of one key per piece on its square, plus keys
+ * for the side to move, the castling rights that are still available and the
+ * file of a capturable en passant pawn. Moving a piece only has to XOR its old
+ * and new square keys in and out, so the key can be kept up to date as the
+ * board changes. The seed is fixed so keys are the same in every run.
+ */
+final class Zobrist {
+
+    private static final long SEED = 0x5A0B7157C0FFEE42L;
+
+    // indexed by Bitboards.pieceIndex * 64 + square
+    private static final long[] PIECE_SQUARE = new long[12 * 64];
+
+    // indexed by the four castling rights as bits, see ChessGame
+    private static final long[] CASTLING = new long[16];
+
+    private static final long[] EN_PASSANT_FILE = new long[8];
+
+    static final long BLACK_TO_MOVE;
+
+    static {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int i = 0; i < PIECE_SQUARE.length; i++) {
+            PIECE_SQUARE[i] = random.nextLong();
+        }
+
+        // one key per right, each combination is the XOR of its rights
+        long[] rights = new long[4];
+        for (int i = 0; i < rights.length; i++) {
+            rights[i] = random.nextLong();
+        }
+        for (int flags = 0; flags < CASTLING.length; flags++) {
+            for (int i = 0; i < rights.length; i++) {
+                if ((flags & (1 << i)) != 0) {
+                    CASTLING[flags] ^= rights[i];
+                }
+            }
+        }
+
+        for (int i = 0; i < EN_PASSANT_FILE.length; i++) {
+            EN_PASSANT_FILE[i] = random.nextLong();
+        }
+        BLACK_TO_MOVE = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    static long piece(ChessPiece piece, int square) {
+        return PIECE_SQUARE[Bitboards.pieceIndex(piece.getTeamColor(), piece.getPieceType()) * 64 + square];
+    }
+
+    static long castling(int rights) {
+        return CASTLING[rights];
+    }
+
+    static long enPassant(int square) {
+        return EN_PASSANT_FILE[square & 7];
+    }
+}
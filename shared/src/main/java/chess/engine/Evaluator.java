@@ -0,0 +1,69 @@
+package chess.engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.PieceSquareTables;
+
+/**
+ * Static evaluation: material and piece-square values, tapered between the
+ * middlegame and endgame tables by how much material is left.
+ * <p>
+ * The board keeps the sums of both tables and the game phase up to date as
+ * moves are made and unmade, so evaluating a leaf only blends three numbers.
+ * Running with {@code -Dchess.engine.checkEval=true} recomputes every
+ * evaluation from the bitboards as well and fails on any difference.
+ */
+final class Evaluator {
+
+    // centipawns per piece for exchanges and move ordering, not the evaluation itself,
+    // indexed by PieceType ordinal: KING, QUEEN, BISHOP, KNIGHT, ROOK, PAWN
+    static final int[] PIECE_VALUES = {0, 900, 330, 320, 500, 100};
+
+    static final boolean CHECK_INCREMENTAL = Boolean.getBoolean("chess.engine.checkEval");
+
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+
+    private Evaluator() {}
+
+    /**
+     * @return score in centipawns from the point of view of the side to move
+     */
+    static int evaluate(ChessGame game) {
+        ChessBoard board = game.getBoard();
+        int score = PieceSquareTables.taper(board.getMiddlegameScore(), board.getEndgameScore(), board.getGamePhase());
+        if (CHECK_INCREMENTAL) {
+            int full = evaluateFully(board);
+            if (full != score) {
+                throw new IllegalStateException("Incremental evaluation " + score + " but recomputed "
+                        + full + " in " + game.toFen());
+            }
+        }
+        return game.getTeamTurn() == ChessGame.TeamColor.WHITE ? score : -score;
+    }
+
+    /**
+     * Sums the tables over every piece on the board, the slow way
+     *
+     * @return score in centipawns from white's point of view
+     */
+    static int evaluateFully(ChessBoard board) {
+        int middlegame = 0;
+        int endgame = 0;
+        int phase = 0;
+        for (ChessGame.TeamColor color : ChessGame.TeamColor.values()) {
+            for (ChessPiece.PieceType type : TYPES) {
+                ChessPiece piece = ChessPiece.of(color, type);
+                long pieces = board.getBitboard(color, type);
+                while (pieces != 0) {
+                    int square = Long.numberOfTrailingZeros(pieces);
+                    middlegame += PieceSquareTables.middlegame(piece, square);
+                    endgame += PieceSquareTables.endgame(piece, square);
+                    phase += PieceSquareTables.phase(type);
+                    pieces &= pieces - 1;
+                }
+            }
+        }
+        return PieceSquareTables.taper(middlegame, endgame, phase);
+    }
+}
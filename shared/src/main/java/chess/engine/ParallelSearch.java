@@ -0,0 +1,135 @@
+package chess.engine;
+
+import chess.ChessGame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Lazy SMP: every thread runs the same iterative deepening {@link Search} on
+ * the same root, sharing one {@link TranspositionTable} and nothing else.
+ * Helpers start one or two plies deeper than the main thread, so at any
+ * moment the threads are spread over neighbouring depths, and each fills the
+ * table with results the others then cut off on or order by. The main
+ * thread's result is the one returned; once it finishes the helpers are
+ * stopped.
+ * <p>
+ * The helper threads are kept between searches, so one instance should be
+ * reused and closed when no longer needed.
+ */
+public class ParallelSearch implements AutoCloseable {
+
+    private final TranspositionTable table;
+    private final Search[] searches;
+    private final ExecutorService helpers;
+
+    /**
+     * @param threads total number of search threads, the calling thread included
+     * @param table table shared by all the threads
+     */
+    public ParallelSearch(int threads, TranspositionTable table) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Need at least one thread");
+        }
+        this.table = table;
+        this.searches = new Search[threads];
+        for (int i = 0; i < threads; i++) {
+            searches[i] = new Search(table);
+        }
+        this.helpers = threads == 1 ? null : Executors.newFixedThreadPool(threads - 1, runnable -> {
+            Thread thread = new Thread(runnable, "search helper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param position game to search from, left unchanged and not to be changed until the search returns
+     * @param limits depth and time budget of the main thread
+     * @return result of the main thread's deepest finished iteration, with the nodes of every thread
+     */
+    public SearchResult search(ChessGame position, SearchLimits limits) {
+        return search(position, limits, result -> { });
+    }
+
+    /**
+     * @param position game to search from, left unchanged and not to be changed until the search returns
+     * @param limits depth and time budget of the main thread
+     * @param onIteration told about each iteration the main thread finishes
+     * @return result of the main thread's deepest finished iteration, with the nodes of every thread
+     */
+    public SearchResult search(ChessGame position, SearchLimits limits, Consumer<SearchResult> onIteration) {
+        table.newSearch();
+        for (Search search : searches) {
+            search.resume();
+        }
+
+        // helpers run until stopped, half of them a ply ahead of the other half
+        SearchLimits helperLimits = new SearchLimits(Search.MAX_PLY, 0);
+        List<Future<?>> running = new ArrayList<>();
+        for (int i = 1; i < searches.length; i++) {
+            Search helper = searches[i];
+            int firstDepth = 2 + (i & 1);
+            running.add(helpers.submit(() -> helper.search(position, helperLimits, result -> { }, firstDepth)));
+        }
+
+        SearchResult result;
+        try {
+            result = searches[0].search(position, limits, onIteration, 1);
+        } finally {
+            for (Search search : searches) {
+                search.stop();
+            }
+            awaitHelpers(running);
+        }
+
+        long nodes = 0;
+        for (Search search : searches) {
+            nodes += search.getNodes();
+        }
+        return new SearchResult(result.bestMove(), result.score(), result.depth(), result.principalVariation(),
+                nodes, result.nanos());
+    }
+
+    /**
+     * Ends a running search as soon as possible, from any thread
+     */
+    public void stop() {
+        for (Search search : searches) {
+            search.stop();
+        }
+    }
+
+    public int getThreads() {
+        return searches.length;
+    }
+
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    @Override
+    public void close() {
+        if (helpers != null) {
+            helpers.shutdownNow();
+        }
+    }
+
+    private static void awaitHelpers(List<Future<?>> running) {
+        for (Future<?> future : running) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Search helper failed", e.getCause());
+            }
+        }
+    }
+}
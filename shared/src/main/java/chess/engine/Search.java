@@ -0,0 +1,503 @@
+package chess.engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.PackedMove;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Iterative deepening principal variation search. Callers pass a
+ * {@link ChessGame} and get {@link ChessMove}s back; in between the search
+ * works on its own copy of the game with packed int moves, making and
+ * unmaking them in place, and keeps every move list in one preallocated
+ * buffer.
+ * <p>
+ * Each iteration searches the first move of a node with a full window and
+ * the rest with a null window, re-searching only the ones that turn out
+ * better. The previous iteration's principal variation is tried first, then
+ * the best move the {@link TranspositionTable} has for the position, so
+ * most nodes are settled by their first move. Table entries deep enough to
+ * decide a null window node end it without a search.
+ * <p>
+ * The remaining moves are scored and picked best first as the loop reaches
+ * them: captures that do not lose material by {@link StaticExchange} in
+ * most valuable victim, least valuable attacker order, then the two killer
+ * moves that last cut off at the same ply, then quiet moves by their
+ * history of cutoffs, and losing captures last. At the horizon a quiescence
+ * search plays out captures that do not lose material until the position
+ * is quiet, so the evaluation never stops halfway through an exchange.
+ * <p>
+ * A Search is not thread safe, but {@link #stop()} may be called from any
+ * thread to end a running search early. A search stopped before its first
+ * iteration finishes may return a result without a move.
+ */
+public class Search {
+
+    // mate at the root scores MATE, mate found n plies down scores MATE - n
+    public static final int MATE = 30_000;
+    public static final int MAX_PLY = 128;
+
+    static final int INFINITY = 32_000;
+    static final int DRAW = 0;
+
+    // how many nodes go by between looks at the clock
+    private static final int TIME_CHECK_INTERVAL = 2048;
+
+    // move ordering scores, in the order the bands are tried
+    private static final int PV_SCORE = 4_000_000;
+    private static final int HASH_SCORE = 3_000_000;
+    private static final int GOOD_CAPTURE_SCORE = 2_000_000;
+    private static final int KILLER_SCORE = 1_000_000;
+    private static final int BAD_CAPTURE_SCORE = -1_000_000;
+    // history counts are halved once one passes this, keeping them below the killers
+    private static final int HISTORY_MAX = 500_000;
+
+    // least valuable attacker first among captures of the same victim, indexed by PieceType ordinal
+    private static final int[] ATTACKER_RANK = {5, 4, 2, 1, 3, 0};
+
+    // triangular principal variation table, row ply holds the line from that ply on
+    private final int[][] pvTable = new int[MAX_PLY + 1][MAX_PLY + 1];
+    private final int[] pvLength = new int[MAX_PLY + 1];
+    // line found by the last finished iteration, tried first by the next one
+    private final int[] previousPv = new int[MAX_PLY + 1];
+    private int previousPvLength;
+
+    private final int[] moves = new int[ChessGame.MAX_MOVES * (MAX_PLY + 1)];
+    // ordering score of the move at the same index of the move buffer
+    private final int[] scores = new int[moves.length];
+    // two most recent quiet moves to cause a cutoff at each ply
+    private final int[][] killers = new int[MAX_PLY + 1][2];
+    // cutoffs caused by each quiet move, indexed by color, from square and to square
+    private final int[] history = new int[2 * 64 * 64];
+    private final StaticExchange exchange = new StaticExchange();
+    private final TranspositionTable table;
+
+    private ChessGame game;
+    private long nodes;
+    private long startNanos;
+    private long deadlineNanos;
+    private boolean timed;
+    private volatile boolean stopped;
+
+    /**
+     * Searches with a 16 MB table of its own
+     */
+    public Search() {
+        this(new TranspositionTable(16));
+    }
+
+    /**
+     * @param table table to keep results in, kept between searches
+     */
+    public Search(TranspositionTable table) {
+        this.table = table;
+    }
+
+    /**
+     * @param position game to search from, left unchanged
+     * @param limits depth and time budget
+     * @return result of the deepest iteration that finished
+     */
+    public SearchResult search(ChessGame position, SearchLimits limits) {
+        return search(position, limits, result -> { });
+    }
+
+    /**
+     * @param position game to search from, left unchanged
+     * @param limits depth and time budget
+     * @param onIteration told about each finished iteration, for progress output
+     * @return result of the deepest iteration that finished
+     */
+    public SearchResult search(ChessGame position, SearchLimits limits, Consumer<SearchResult> onIteration) {
+        stopped = false;
+        table.newSearch();
+        return search(position, limits, onIteration, 1);
+    }
+
+    /**
+     * Runs the iterations without resetting the stop flag or starting a new
+     * table generation, which {@link ParallelSearch} does once for all threads
+     *
+     * @param firstDepth depth of the first iteration, helpers start deeper to spread the threads out
+     */
+    SearchResult search(ChessGame position, SearchLimits limits, Consumer<SearchResult> onIteration,
+                        int firstDepth) {
+        game = position.copy();
+        nodes = 0;
+        previousPvLength = 0;
+        startNanos = System.nanoTime();
+        timed = limits.millis() > 0;
+        deadlineNanos = startNanos + limits.millis() * 1_000_000L;
+        for (int[] killer : killers) {
+            killer[0] = 0;
+            killer[1] = 0;
+        }
+        // older cutoffs count for less but still point the way
+        for (int i = 0; i < history.length; i++) {
+            history[i] >>= 1;
+        }
+
+        SearchResult result = null;
+        for (int depth = firstDepth; depth <= limits.depth(); depth++) {
+            int score = search(depth, -INFINITY, INFINITY, 0, 0, true);
+            // an unfinished iteration is thrown away, apart from the first
+            if (stopped && result != null) {
+                break;
+            }
+
+            System.arraycopy(pvTable[0], 0, previousPv, 0, pvLength[0]);
+            previousPvLength = pvLength[0];
+            result = result(score, depth);
+            onIteration.accept(result);
+
+            // no deeper search can change a forced mate that fits inside this depth,
+            // and a position with no moves has nothing to deepen
+            if (stopped || previousPvLength == 0 || MATE - Math.abs(score) <= depth) {
+                break;
+            }
+        }
+        game = null;
+        return result;
+    }
+
+    /**
+     * Ends a running search as soon as possible, from any thread. The result
+     * is that of the last iteration finished.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Clears the stop flag ahead of a helper search, before its thread starts
+     */
+    void resume() {
+        stopped = false;
+    }
+
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    /**
+     * @return positions visited by the running or last search
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Negamax alpha-beta with a principal variation window
+     *
+     * @param offset start of this ply's slice of the move buffer
+     * @param onPv whether every move so far followed the previous principal variation
+     * @return score for the side to move, between alpha and beta unless it fails outside them
+     */
+    private int search(int depth, int alpha, int beta, int ply, int offset, boolean onPv) {
+        pvLength[ply] = 0;
+        if ((++nodes & (TIME_CHECK_INTERVAL - 1)) == 0) {
+            checkTime();
+        }
+        if (stopped) {
+            return DRAW;
+        }
+
+        if (ply > 0 && (game.getHalfmoveClock() >= 100 || game.repetitionCount() >= 2)) {
+            return DRAW;
+        }
+
+        ChessGame.TeamColor turn = game.getTeamTurn();
+        boolean inCheck = game.isInCheck(turn);
+        // a check is searched one ply deeper so that forced lines are seen through
+        if (inCheck) {
+            depth++;
+        }
+        if (depth <= 0) {
+            return quiescence(alpha, beta, ply, offset);
+        }
+
+        long key = game.zobristKey();
+        int hashMove = 0;
+        long entry = table.probe(key);
+        if (entry != 0) {
+            hashMove = TranspositionTable.move(entry);
+            // only null window nodes take a cutoff, so the principal variation stays whole
+            if (ply > 0 && beta - alpha == 1 && TranspositionTable.depth(entry) >= depth) {
+                int score = TranspositionTable.fromStored(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+                        || (bound == TranspositionTable.UPPER_BOUND && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        int end = game.legalMoves(turn, moves, offset);
+        if (end == offset) {
+            return inCheck ? -MATE + ply : DRAW;
+        }
+        if (ply >= MAX_PLY) {
+            return Evaluator.evaluate(game);
+        }
+
+        int pvMove = onPv && ply < previousPvLength ? previousPv[ply] : 0;
+        boolean followPv = scoreMoves(offset, end, ply, pvMove, hashMove);
+
+        int originalAlpha = alpha;
+        int bestMove = 0;
+        int best = -INFINITY;
+        for (int i = offset; i < end; i++) {
+            int move = pickMove(i, end);
+            game.doMove(move);
+            int score;
+            if (i == offset) {
+                score = -search(depth - 1, -beta, -alpha, ply + 1, end, followPv);
+            } else {
+                // prove the move is no better than the best so far, searching it fully only if not
+                score = -search(depth - 1, -alpha - 1, -alpha, ply + 1, end, false);
+                if (score > alpha && score < beta) {
+                    score = -search(depth - 1, -beta, -alpha, ply + 1, end, false);
+                }
+            }
+            game.undoMove();
+
+            if (stopped) {
+                return DRAW;
+            }
+            if (score > best) {
+                best = score;
+                bestMove = move;
+                if (score > alpha) {
+                    alpha = score;
+                    updatePv(ply, move);
+                    if (alpha >= beta) {
+                        if (isQuiet(move)) {
+                            rememberCutoff(turn, move, depth, ply);
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+
+        int bound = best >= beta ? TranspositionTable.LOWER_BOUND
+                : best > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER_BOUND;
+        table.store(key, bestMove, TranspositionTable.toStored(best, ply), depth, bound);
+        return best;
+    }
+
+    /**
+     * Searches only captures and promotions past the horizon, letting the
+     * side to move stand pat on the static evaluation instead. Captures that
+     * lose material by static exchange are left out. A side in check has no
+     * such choice, so every evasion is searched and mate is recognised.
+     *
+     * @param offset start of this ply's slice of the move buffer
+     * @return score for the side to move, between alpha and beta unless it fails outside them
+     */
+    private int quiescence(int alpha, int beta, int ply, int offset) {
+        pvLength[ply] = 0;
+        if ((++nodes & (TIME_CHECK_INTERVAL - 1)) == 0) {
+            checkTime();
+        }
+        if (stopped) {
+            return DRAW;
+        }
+
+        ChessGame.TeamColor turn = game.getTeamTurn();
+        boolean inCheck = game.isInCheck(turn);
+        int end = game.legalMoves(turn, moves, offset);
+        if (end == offset) {
+            return inCheck ? -MATE + ply : DRAW;
+        }
+        if (ply >= MAX_PLY) {
+            return Evaluator.evaluate(game);
+        }
+
+        int best = -INFINITY;
+        if (!inCheck) {
+            best = Evaluator.evaluate(game);
+            if (best >= beta) {
+                return best;
+            }
+            alpha = Math.max(alpha, best);
+        }
+
+        end = scoreTactical(offset, end, inCheck);
+        for (int i = offset; i < end; i++) {
+            int move = pickMove(i, end);
+            game.doMove(move);
+            int score = -quiescence(-beta, -alpha, ply + 1, end);
+            game.undoMove();
+
+            if (stopped) {
+                return DRAW;
+            }
+            if (score > best) {
+                best = score;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Scores a full-width node's moves for {@link #pickMove}
+     *
+     * @param pvMove move of the previous principal variation at this ply, or 0
+     * @param hashMove move the table has for the position, or 0
+     * @return true if the principal variation move was among the moves
+     */
+    private boolean scoreMoves(int from, int end, int ply, int pvMove, int hashMove) {
+        ChessBoard board = game.getBoard();
+        int colorOffset = game.getTeamTurn().ordinal() << 12;
+        int[] killer = killers[ply];
+        boolean foundPv = false;
+        for (int i = from; i < end; i++) {
+            int move = moves[i];
+            int score;
+            if (move == pvMove) {
+                score = PV_SCORE;
+                foundPv = true;
+            } else if (move == hashMove) {
+                score = HASH_SCORE;
+            } else if (!isQuiet(move)) {
+                boolean losing = PackedMove.isCapture(move) && exchange.evaluate(board, move) < 0;
+                score = (losing ? BAD_CAPTURE_SCORE : GOOD_CAPTURE_SCORE) + mvvLva(board, move);
+            } else if (move == killer[0]) {
+                score = KILLER_SCORE;
+            } else if (move == killer[1]) {
+                score = KILLER_SCORE - 1;
+            } else {
+                score = history[colorOffset | (move & 0xFFF)];
+            }
+            scores[i] = score;
+        }
+        return foundPv;
+    }
+
+    /**
+     * Scores the moves a quiescence node searches, dropping the rest: every
+     * evasion when in check, otherwise captures that do not lose material and
+     * promotions
+     *
+     * @return end of the moves kept, which stay at the front of the slice
+     */
+    private int scoreTactical(int from, int end, boolean inCheck) {
+        ChessBoard board = game.getBoard();
+        int kept = from;
+        for (int i = from; i < end; i++) {
+            int move = moves[i];
+            if (isQuiet(move)) {
+                if (!inCheck) {
+                    continue;
+                }
+                scores[kept] = 0;
+            } else {
+                if (!inCheck && PackedMove.isCapture(move) && exchange.evaluate(board, move) < 0) {
+                    continue;
+                }
+                scores[kept] = GOOD_CAPTURE_SCORE + mvvLva(board, move);
+            }
+            moves[kept++] = move;
+        }
+        return kept;
+    }
+
+    /**
+     * Most valuable victim first, then least valuable attacker, with a
+     * promotion counted as capturing the piece it becomes
+     */
+    private static int mvvLva(ChessBoard board, int move) {
+        int to = PackedMove.to(move);
+        ChessPiece victim = board.getPiece(to);
+        int gained = victim != null ? Evaluator.PIECE_VALUES[victim.getPieceType().ordinal()]
+                : PackedMove.isCapture(move) ? Evaluator.PIECE_VALUES[ChessPiece.PieceType.PAWN.ordinal()] : 0;
+        ChessPiece.PieceType promotion = PackedMove.promotion(move);
+        if (promotion != null) {
+            gained += Evaluator.PIECE_VALUES[promotion.ordinal()];
+        }
+        ChessPiece attacker = board.getPiece(PackedMove.from(move));
+        return gained * 8 - ATTACKER_RANK[attacker.getPieceType().ordinal()];
+    }
+
+    /**
+     * Selection sort one step at a time: swaps the best scored move left in
+     * the slice to its front, so a node that cuts off early never sorts the rest
+     *
+     * @return the move now at index
+     */
+    private int pickMove(int index, int end) {
+        int best = index;
+        for (int i = index + 1; i < end; i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        int move = moves[best];
+        if (best != index) {
+            int score = scores[best];
+            moves[best] = moves[index];
+            scores[best] = scores[index];
+            moves[index] = move;
+            scores[index] = score;
+        }
+        return move;
+    }
+
+    private static boolean isQuiet(int move) {
+        return !PackedMove.isCapture(move) && !PackedMove.isPromotion(move);
+    }
+
+    /**
+     * Records a quiet move that caused a beta cutoff as a killer for its ply
+     * and in the history table, weighted by the depth it cut off at
+     */
+    private void rememberCutoff(ChessGame.TeamColor turn, int move, int depth, int ply) {
+        int[] killer = killers[ply];
+        if (killer[0] != move) {
+            killer[1] = killer[0];
+            killer[0] = move;
+        }
+        int index = (turn.ordinal() << 12) | (move & 0xFFF);
+        history[index] += depth * depth;
+        if (history[index] > HISTORY_MAX) {
+            for (int i = 0; i < history.length; i++) {
+                history[i] >>= 1;
+            }
+        }
+    }
+
+    private void updatePv(int ply, int move) {
+        pvTable[ply][0] = move;
+        System.arraycopy(pvTable[ply + 1], 0, pvTable[ply], 1, pvLength[ply + 1]);
+        pvLength[ply] = pvLength[ply + 1] + 1;
+    }
+
+    private void checkTime() {
+        // the clock is only watched once there is a move to fall back on
+        if (timed && previousPvLength > 0 && System.nanoTime() >= deadlineNanos) {
+            stopped = true;
+        }
+    }
+
+    private SearchResult result(int score, int depth) {
+        List<ChessMove> line = new ArrayList<>(previousPvLength);
+        for (int i = 0; i < previousPvLength; i++) {
+            line.add(PackedMove.toChessMove(previousPv[i]));
+        }
+        ChessMove best = line.isEmpty() ? null : line.get(0);
+        return new SearchResult(best, score, depth, List.copyOf(line), nodes, System.nanoTime() - startNanos);
+    }
+}
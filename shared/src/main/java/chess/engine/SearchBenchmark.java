@@ -0,0 +1,80 @@
+package chess.engine;
+
+import chess.ChessGame;
+
+import java.util.List;
+
+/**
+ * Time and nodes to reach a fixed depth on a fixed set of positions, the
+ * figures to compare when changing the search or the number of threads.
+ * Run as {@code SearchBenchmark [depth] [megabytes]} to print a table for 1,
+ * 2, 4, 8 and 16 threads.
+ */
+public final class SearchBenchmark {
+
+    /**
+     * The perft test positions plus a quiet middlegame
+     */
+    public static final List<String> POSITIONS = List.of(
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10");
+
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16};
+
+    private SearchBenchmark() {}
+
+    /**
+     * Totals over the position set
+     *
+     * @param threads search threads used
+     * @param nodes positions visited by all threads together
+     * @param nanos wall clock time to reach the depth on every position
+     */
+    public record Result(int threads, long nodes, long nanos) {
+
+        public long nodesPerSecond() {
+            return nanos == 0 ? 0 : nodes * 1_000_000_000L / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%2d threads  %,13d nodes  %8.3f s  %,11d nodes/s",
+                    threads, nodes, nanos / 1e9, nodesPerSecond());
+        }
+    }
+
+    /**
+     * Searches every position to the depth, each with an empty table
+     */
+    public static Result run(int threads, int depth, int megabytes) {
+        long nodes = 0;
+        long nanos = 0;
+        for (String fen : POSITIONS) {
+            try (ParallelSearch search = new ParallelSearch(threads, new TranspositionTable(megabytes))) {
+                SearchResult result = search.search(ChessGame.fromFen(fen), SearchLimits.depth(depth));
+                nodes += result.nodes();
+                nanos += result.nanos();
+            }
+        }
+        return new Result(threads, nodes, nanos);
+    }
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+        int megabytes = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+
+        System.out.println("time to depth " + depth + " over " + POSITIONS.size() + " positions");
+        Result single = null;
+        for (int threads : THREAD_COUNTS) {
+            Result result = run(threads, depth, megabytes);
+            if (single == null) {
+                single = result;
+            }
+            System.out.printf("%s  %5.2fx%n", result, (double) single.nanos() / result.nanos());
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package chess.engine;
+
+/**
+ * How long a {@link Search} may run: up to a depth, up to a time, or
+ * whichever of the two comes first. A search always finishes depth 1 so that
+ * it has a move to return.
+ *
+ * @param depth deepest iteration to search, in plies
+ * @param millis wall clock budget, 0 for none
+ */
+public record SearchLimits(int depth, long millis) {
+
+    public SearchLimits {
+        if (depth < 1 || depth > Search.MAX_PLY) {
+            throw new IllegalArgumentException("Depth out of range: " + depth);
+        }
+        if (millis < 0) {
+            throw new IllegalArgumentException("Negative time budget: " + millis);
+        }
+    }
+
+    /**
+     * @return limits that search to exactly the given depth, however long it takes
+     */
+    public static SearchLimits depth(int depth) {
+        return new SearchLimits(depth, 0);
+    }
+
+    /**
+     * @return limits that deepen until the time runs out
+     */
+    public static SearchLimits time(long millis) {
+        return new SearchLimits(Search.MAX_PLY, millis);
+    }
+}
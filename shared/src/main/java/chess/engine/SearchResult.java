@@ -0,0 +1,49 @@
+package chess.engine;
+
+import chess.ChessMove;
+
+import java.util.List;
+
+/**
+ * Outcome of the deepest finished iteration of a {@link Search}
+ *
+ * @param bestMove move to play, or null if the side to move has none
+ * @param score centipawns for the side to move, or a mate score, see {@link #isMate()}
+ * @param depth depth of the iteration the move comes from
+ * @param principalVariation expected line of play, starting with the best move
+ * @param nodes positions visited by the whole search so far
+ * @param nanos time taken by the whole search so far
+ */
+public record SearchResult(ChessMove bestMove, int score, int depth, List<ChessMove> principalVariation,
+                           long nodes, long nanos) {
+
+    public long nodesPerSecond() {
+        return nanos == 0 ? 0 : nodes * 1_000_000_000L / nanos;
+    }
+
+    /**
+     * @return true if the score is a forced mate, for either side
+     */
+    public boolean isMate() {
+        return Math.abs(score) >= Search.MATE - Search.MAX_PLY;
+    }
+
+    /**
+     * @return moves until mate, negative when the side to move is the one
+     * getting mated, or 0 if the score is not a mate
+     */
+    public int mateIn() {
+        if (!isMate()) {
+            return 0;
+        }
+        int plies = Search.MATE - Math.abs(score);
+        return score > 0 ? (plies + 1) / 2 : -(plies / 2);
+    }
+
+    @Override
+    public String toString() {
+        String value = isMate() ? "mate " + mateIn() : "cp " + score;
+        return "depth " + depth + " score " + value + " nodes " + nodes + " nps " + nodesPerSecond()
+                + " pv " + principalVariation;
+    }
+}
@@ -0,0 +1,95 @@
+package chess.engine;
+
+import chess.Bitboards;
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.PackedMove;
+
+/**
+ * Static exchange evaluation: the material a capture wins or loses once
+ * both sides have made every recapture on the square that pays for them,
+ * each side using its least valuable piece first. Sliders behind a piece
+ * that has captured join in as the occupancy the attacks are computed from
+ * shrinks. Pins and checks are not considered.
+ * <p>
+ * Each instance keeps its own swap list, so a search thread needs one of its own.
+ */
+final class StaticExchange {
+
+    // a king can take last, but never into a square still defended
+    private static final int KING_VALUE = 20_000;
+
+    // least valuable first
+    private static final ChessPiece.PieceType[] ATTACKER_ORDER = {
+            ChessPiece.PieceType.PAWN, ChessPiece.PieceType.KNIGHT, ChessPiece.PieceType.BISHOP,
+            ChessPiece.PieceType.ROOK, ChessPiece.PieceType.QUEEN, ChessPiece.PieceType.KING};
+
+    // material balance after each capture in the sequence, from the capturing side's view
+    private final int[] gain = new int[32];
+
+    /**
+     * @param move capture for the piece on its starting square, en passant included
+     * @return centipawns the side making the capture comes out ahead, negative if it loses material
+     */
+    int evaluate(ChessBoard board, int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        ChessPiece attacker = board.getPiece(from);
+        ChessPiece victim = board.getPiece(to);
+
+        long occupied = board.getOccupancy() ^ Bitboards.bit(from);
+        if ((move & PackedMove.EN_PASSANT) != 0) {
+            // the pawn taken stands beside the target square, not on it
+            occupied ^= Bitboards.bit(to ^ 8);
+            gain[0] = Evaluator.PIECE_VALUES[ChessPiece.PieceType.PAWN.ordinal()];
+        } else {
+            gain[0] = victim == null ? 0 : value(victim.getPieceType());
+        }
+
+        int onSquare = value(attacker.getPieceType());
+        ChessGame.TeamColor side = other(attacker.getTeamColor());
+        int depth = 0;
+        while (depth < gain.length - 1) {
+            long attackers = board.attackersTo(to, side, occupied) & occupied;
+            if (attackers == 0) {
+                break;
+            }
+
+            ChessPiece.PieceType next = null;
+            long bit = 0;
+            for (ChessPiece.PieceType type : ATTACKER_ORDER) {
+                long ofType = attackers & board.getBitboard(side, type);
+                if (ofType != 0) {
+                    next = type;
+                    bit = ofType & -ofType;
+                    break;
+                }
+            }
+
+            depth++;
+            // what this side stands to gain by capturing, if the exchange stopped right after
+            gain[depth] = onSquare - gain[depth - 1];
+            if (Math.max(-gain[depth - 1], gain[depth]) < 0) {
+                break;
+            }
+            occupied ^= bit;
+            onSquare = value(next);
+            side = other(side);
+        }
+
+        // each side may stand pat instead of recapturing
+        for (; depth > 0; depth--) {
+            gain[depth - 1] = -Math.max(-gain[depth - 1], gain[depth]);
+        }
+        return gain[0];
+    }
+
+    static int value(ChessPiece.PieceType type) {
+        return type == ChessPiece.PieceType.KING ? KING_VALUE : Evaluator.PIECE_VALUES[type.ordinal()];
+    }
+
+    private static ChessGame.TeamColor other(ChessGame.TeamColor color) {
+        return color == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+    }
+}
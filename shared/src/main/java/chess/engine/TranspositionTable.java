@@ -0,0 +1,200 @@
+package chess.engine;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transposition table in one flat {@code long[]}, shared between search
+ * threads without locks and invisible to the garbage collector apart from
+ * the single array.
+ * <p>
+ * The table is split into buckets of two entries, each entry two longs: the
+ * position key xor'd with the data, then the data. The data packs the best
+ * move, score, depth, bound type and the generation it was written in. A
+ * reader checks that key xor data gives back its key, so an entry torn by
+ * two threads writing at once reads as a miss rather than as wrong data.
+ * <p>
+ * Of a bucket's two entries the first keeps the deepest result, replaced by
+ * something shallower only once it is from an older search, while the second
+ * always takes the newest result that the first turned away.
+ */
+public final class TranspositionTable {
+
+    public static final int EXACT = 1;
+    public static final int LOWER_BOUND = 2;
+    public static final int UPPER_BOUND = 3;
+
+    private static final int MOVE_BITS = 19;
+    private static final int SCORE_SHIFT = MOVE_BITS;
+    private static final int DEPTH_SHIFT = SCORE_SHIFT + 16;
+    private static final int BOUND_SHIFT = DEPTH_SHIFT + 8;
+    private static final int GENERATION_SHIFT = BOUND_SHIFT + 2;
+
+    // buckets looked at for the fill rate, like the UCI hashfull figure
+    private static final int FILL_SAMPLE = 1000;
+
+    private final long[] slots;
+    private final int bucketMask;
+    private int generation;
+
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * @param megabytes memory to use, rounded down to a power of two number of buckets
+     */
+    public TranspositionTable(int megabytes) {
+        if (megabytes < 1 || megabytes > 8192) {
+            throw new IllegalArgumentException("Table size out of range: " + megabytes + " MB");
+        }
+        // 4 longs, 32 bytes, per bucket
+        int buckets = Integer.highestOneBit((int) Math.min((long) megabytes << 15, 1 << 28));
+        slots = new long[buckets * 4];
+        bucketMask = buckets - 1;
+    }
+
+    /**
+     * @return the entry's data for the position, or 0 if the table does not have it
+     */
+    public long probe(long key) {
+        probes.increment();
+        int bucket = bucket(key);
+        for (int slot = bucket; slot < bucket + 4; slot += 2) {
+            long data = slots[slot + 1];
+            if (data != 0 && (slots[slot] ^ data) == key) {
+                hits.increment();
+                return data;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @param move packed move found best, or 0 if none
+     * @param score score as stored, mate scores relative to the position, see {@link #toStored}
+     * @param bound {@link #EXACT}, {@link #LOWER_BOUND} or {@link #UPPER_BOUND}
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        long data = (move & ((1L << MOVE_BITS) - 1))
+                | ((long) (score & 0xFFFF) << SCORE_SHIFT)
+                | ((long) Math.min(Math.max(depth, 0), 255) << DEPTH_SHIFT)
+                | ((long) bound << BOUND_SHIFT)
+                | ((long) generation << GENERATION_SHIFT);
+
+        int bucket = bucket(key);
+        long deepest = slots[bucket + 1];
+        // same position, an empty slot, a result from an older search, or a deeper one take the first entry
+        boolean replaceDeepest = deepest == 0 || (slots[bucket] ^ deepest) == key
+                || generation(deepest) != generation || depth >= depth(deepest);
+        int slot = replaceDeepest ? bucket : bucket + 2;
+        slots[slot] = key ^ data;
+        slots[slot + 1] = data;
+    }
+
+    /**
+     * Starts a new search, ageing everything stored so far so the depth
+     * preferred entries make room for it
+     */
+    public void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    public void clear() {
+        Arrays.fill(slots, 0L);
+        generation = 0;
+        probes.reset();
+        hits.reset();
+    }
+
+    /**
+     * @return how full the table is with entries from the current search, in
+     * thousandths, estimated from the first buckets
+     */
+    public int fillPermille() {
+        int buckets = Math.min(FILL_SAMPLE, bucketMask + 1);
+        int used = 0;
+        for (int slot = 0; slot < buckets * 4; slot += 2) {
+            long data = slots[slot + 1];
+            if (data != 0 && generation(data) == generation) {
+                used++;
+            }
+        }
+        return used * 1000 / (buckets * 2);
+    }
+
+    public long getProbes() {
+        return probes.sum();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return share of probes that found their position, 0 before any probe
+     */
+    public double hitRate() {
+        long probed = probes.sum();
+        return probed == 0 ? 0 : (double) hits.sum() / probed;
+    }
+
+    /**
+     * @return size of the table in bytes
+     */
+    public long sizeBytes() {
+        return slots.length * 8L;
+    }
+
+    public static int move(long data) {
+        return (int) (data & ((1L << MOVE_BITS) - 1));
+    }
+
+    public static int score(long data) {
+        return (short) (data >>> SCORE_SHIFT);
+    }
+
+    public static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+    public static int bound(long data) {
+        return (int) (data >>> BOUND_SHIFT) & 3;
+    }
+
+    private static int generation(long data) {
+        return (int) (data >>> GENERATION_SHIFT) & 0xFF;
+    }
+
+    /**
+     * Mate scores count plies from the root, but an entry can be reached at
+     * any ply, so they are stored counting from the entry's own position
+     *
+     * @return the score to store for a node at the given ply
+     */
+    public static int toStored(int score, int ply) {
+        if (score >= Search.MATE - Search.MAX_PLY) {
+            return score + ply;
+        }
+        if (score <= -Search.MATE + Search.MAX_PLY) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    /**
+     * @return a stored score turned back into one counted from the root
+     */
+    public static int fromStored(int score, int ply) {
+        if (score >= Search.MATE - Search.MAX_PLY) {
+            return score - ply;
+        }
+        if (score <= -Search.MATE + Search.MAX_PLY) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    private int bucket(long key) {
+        return ((int) (key ^ (key >>> 32)) & bucketMask) << 2;
+    }
+}
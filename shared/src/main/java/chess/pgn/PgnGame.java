@@ -0,0 +1,85 @@
+package chess.pgn;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.PackedMove;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One game of a PGN file: its tag pairs, the moves of the main line and the
+ * result. Comments, annotations and variations are not kept.
+ */
+public class PgnGame {
+
+    private final Map<String, String> tags = new LinkedHashMap<>();
+    private final List<ChessMove> moves = new ArrayList<>();
+    private String result = "*";
+
+    /**
+     * @param name tag name, such as White or Event
+     * @return the tag's value, or null if the game does not have it
+     */
+    public String getTag(String name) {
+        return tags.get(name);
+    }
+
+    public void setTag(String name, String value) {
+        tags.put(name, value);
+    }
+
+    /**
+     * @return the tag pairs in the order they were read or set
+     */
+    public Map<String, String> getTags() {
+        return tags;
+    }
+
+    /**
+     * @return the moves of the main line, starting from {@link #startingPosition()}
+     */
+    public List<ChessMove> getMoves() {
+        return moves;
+    }
+
+    /**
+     * @return 1-0, 0-1, 1/2-1/2, or * for a game that is unfinished or unknown
+     */
+    public String getResult() {
+        return result;
+    }
+
+    public void setResult(String result) {
+        this.result = result;
+    }
+
+    /**
+     * @return a new game set up as the moves start from: the FEN tag if the
+     * game has one, the normal starting position otherwise
+     */
+    public ChessGame startingPosition() {
+        String fen = tags.get("FEN");
+        return fen == null ? new ChessGame() : ChessGame.fromFen(fen);
+    }
+
+    /**
+     * Plays the moves without the game over check of makeMove, since players
+     * may carry on past a draw neither of them claimed
+     *
+     * @return a new game with all of the moves played
+     * @throws IllegalArgumentException if one of the moves is not legal
+     */
+    public ChessGame replay() {
+        ChessGame game = startingPosition();
+        for (ChessMove move : moves) {
+            if (!game.isLegal(move)) {
+                throw new IllegalArgumentException("Illegal move: " + move);
+            }
+            game.doMove(PackedMove.fromChessMove(move));
+        }
+        return game;
+    }
+}
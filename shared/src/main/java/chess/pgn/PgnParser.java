@@ -0,0 +1,180 @@
+package chess.pgn;
+
+import chess.ChessGame;
+import chess.PackedMove;
+
+/**
+ * Parses the text of a single game: the tag pairs, then the movetext. Moves
+ * are played on a board as they are read so each SAN token can be resolved,
+ * while comments, NAGs, variations and move numbers are skipped.
+ */
+final class PgnParser {
+
+    private final CharSequence text;
+    private int pos;
+
+    private PgnParser(CharSequence text) {
+        this.text = text;
+    }
+
+    /**
+     * @param text one game in PGN
+     * @return the parsed game
+     * @throws IllegalArgumentException if a tag or a move can't be read
+     */
+    static PgnGame parse(CharSequence text) {
+        return new PgnParser(text).parseGame();
+    }
+
+    private PgnGame parseGame() {
+        PgnGame game = new PgnGame();
+        ChessGame board = null;
+        int length = text.length();
+
+        while (pos < length) {
+            char c = text.charAt(pos);
+            if (Character.isWhitespace(c)) {
+                pos++;
+            } else if (c == '%' && atLineStart()) {
+                skipLine();
+            } else if (c == '[' && board == null) {
+                parseTag(game);
+            } else if (c == '{') {
+                skipPast('}');
+            } else if (c == ';') {
+                skipLine();
+            } else if (c == '(') {
+                skipVariation();
+            } else if (c == ')') {
+                // a variation closed without being opened, nothing to skip
+                pos++;
+            } else if (c == '$') {
+                pos++;
+                skipToken();
+            } else {
+                // the first movetext token closes the tag section
+                if (board == null) {
+                    board = game.startingPosition();
+                }
+                int start = pos;
+                skipToken();
+                if (!readToken(game, board, start, pos)) {
+                    break;
+                }
+            }
+        }
+        return game;
+    }
+
+    /**
+     * @return false once the result ends the movetext
+     */
+    private boolean readToken(PgnGame game, ChessGame board, int start, int end) {
+        String token = text.subSequence(start, end).toString();
+        if (token.equals("1-0") || token.equals("0-1") || token.equals("1/2-1/2") || token.equals("*")) {
+            game.setResult(token);
+            return false;
+        }
+
+        // move numbers, 12. or 12..., may run straight into the move
+        if (!token.startsWith("0-0")) {
+            while (start < end && Character.isDigit(text.charAt(start))) {
+                start++;
+            }
+            while (start < end && text.charAt(start) == '.') {
+                start++;
+            }
+        }
+        if (start == end) {
+            return true;
+        }
+
+        int move = San.decode(board, text.subSequence(start, end));
+        game.getMoves().add(PackedMove.toChessMove(move));
+        board.doMove(move);
+        return true;
+    }
+
+    private void parseTag(PgnGame game) {
+        int end = text.length();
+        pos++;
+        int nameStart = pos;
+        while (pos < end && !Character.isWhitespace(text.charAt(pos)) && text.charAt(pos) != '"') {
+            pos++;
+        }
+        String name = text.subSequence(nameStart, pos).toString();
+
+        while (pos < end && text.charAt(pos) != '"') {
+            pos++;
+        }
+        if (pos == end || name.isEmpty()) {
+            throw new IllegalArgumentException("Bad tag pair: " + name);
+        }
+        pos++;
+
+        // backslash escapes a quote or another backslash
+        StringBuilder value = new StringBuilder();
+        while (pos < end && text.charAt(pos) != '"') {
+            char c = text.charAt(pos++);
+            if (c == '\\' && pos < end) {
+                c = text.charAt(pos++);
+            }
+            value.append(c);
+        }
+        skipPast(']');
+        game.setTag(name, value.toString());
+    }
+
+    private void skipToken() {
+        int end = text.length();
+        while (pos < end) {
+            char c = text.charAt(pos);
+            if (Character.isWhitespace(c) || c == '{' || c == '(' || c == ')' || c == ';' || c == '$') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    // variations nest, and may hold comments with brackets of their own
+    private void skipVariation() {
+        int depth = 0;
+        int end = text.length();
+        while (pos < end) {
+            char c = text.charAt(pos);
+            if (c == '{') {
+                skipPast('}');
+                continue;
+            }
+            if (c == ';') {
+                skipLine();
+                continue;
+            }
+            pos++;
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return;
+            }
+        }
+    }
+
+    private void skipPast(char close) {
+        int end = text.length();
+        while (pos < end && text.charAt(pos) != close) {
+            pos++;
+        }
+        pos++;
+    }
+
+    private void skipLine() {
+        int end = text.length();
+        while (pos < end && text.charAt(pos) != '\n') {
+            pos++;
+        }
+    }
+
+    private boolean atLineStart() {
+        return pos == 0 || text.charAt(pos - 1) == '\n';
+    }
+}
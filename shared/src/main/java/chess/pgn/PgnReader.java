@@ -0,0 +1,265 @@
+package chess.pgn;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Reads PGN archives of any size. The file is memory-mapped a window at a
+ * time and scanned as raw bytes for the line where each game's tags begin,
+ * which is all the reading done on the calling thread. The games found are
+ * handed to a fork-join pool in batches and parsed there, SAN and all, while
+ * the next batch is being split off; games still reach the consumer one at a
+ * time and in file order.
+ */
+public class PgnReader {
+
+    // bytes mapped at once, the window grows only for a game that doesn't fit
+    private static final long WINDOW = 1L << 26;
+    // games handed to the pool together, and the most a single task parses
+    private static final int BATCH = 4096;
+    private static final int GAMES_PER_TASK = 32;
+
+    private final ForkJoinPool pool;
+
+    public PgnReader() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool pool the games are parsed on
+     */
+    public PgnReader(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Streams every game of a file to the consumer in order. Only a couple of
+     * batches are held in memory at a time, however large the file.
+     *
+     * @param path PGN file, in UTF-8 or plain ASCII
+     * @param consumer called on the calling thread for each game
+     * @throws IOException if the file can't be read
+     * @throws IllegalArgumentException if a game has a move that can't be read
+     */
+    public void read(Path path, Consumer<? super PgnGame> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            Batches batches = new Batches(consumer);
+            long base = 0;
+            long window = WINDOW;
+
+            while (base < size) {
+                long length = Math.min(window, size - base);
+                if (length > Integer.MAX_VALUE) {
+                    throw new IOException("Game at byte " + base + " is too large to read");
+                }
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, base, length);
+
+                // the game running off the end of the window is read again at the start of the next
+                int consumed = split(buffer, base + length == size, batches);
+                if (consumed == 0) {
+                    window *= 2;
+                } else {
+                    base += consumed;
+                    window = WINDOW;
+                }
+            }
+            batches.finish();
+        }
+    }
+
+    /**
+     * @param path PGN file, in UTF-8 or plain ASCII
+     * @return every game of the file, in order
+     * @throws IOException if the file can't be read
+     * @throws IllegalArgumentException if a game has a move that can't be read
+     */
+    public List<PgnGame> readAll(Path path) throws IOException {
+        List<PgnGame> games = new ArrayList<>();
+        read(path, games::add);
+        return games;
+    }
+
+    /**
+     * @param pgn any number of games in PGN
+     * @return the games, in order
+     * @throws IllegalArgumentException if a game has a move that can't be read
+     */
+    public List<PgnGame> parse(String pgn) {
+        List<PgnGame> games = new ArrayList<>();
+        Batches batches = new Batches(games::add);
+        split(ByteBuffer.wrap(pgn.getBytes(StandardCharsets.UTF_8)), true, batches);
+        batches.finish();
+        return games;
+    }
+
+    /**
+     * Cuts the buffer into games. A game starts at a line opening with [ that
+     * comes after movetext, so only whole lines are ever looked at.
+     *
+     * @param last whether the buffer runs to the end of the input, in which
+     * case the final game is complete
+     * @return number of bytes used, up to the start of the last, unfinished game
+     */
+    private static int split(ByteBuffer buffer, boolean last, Batches batches) {
+        int limit = buffer.limit();
+        int gameStart = 0;
+        boolean hasContent = false;
+        boolean inMovetext = false;
+
+        int line = 0;
+        while (line < limit) {
+            byte first = buffer.get(line);
+            if (first == '[') {
+                if (inMovetext) {
+                    batches.add(buffer, gameStart, line);
+                    gameStart = line;
+                    inMovetext = false;
+                }
+                hasContent = true;
+            } else if (!isBlank(buffer, line, limit)) {
+                inMovetext = true;
+                hasContent = true;
+            }
+
+            while (line < limit && buffer.get(line) != '\n') {
+                line++;
+            }
+            line++;
+        }
+
+        if (!last) {
+            return gameStart;
+        }
+        if (hasContent) {
+            batches.add(buffer, gameStart, limit);
+        }
+        return limit;
+    }
+
+    private static boolean isBlank(ByteBuffer buffer, int index, int limit) {
+        for (; index < limit; index++) {
+            byte b = buffer.get(index);
+            if (b == '\n') {
+                return true;
+            }
+            if (b != ' ' && b != '\t' && b != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collects games into batches, keeps one batch parsing on the pool while
+     * the next is filled, and hands finished batches to the consumer in order
+     */
+    private final class Batches {
+
+        private final Consumer<? super PgnGame> consumer;
+        private final List<ByteBuffer> buffers = new ArrayList<>();
+        private int[] bounds = new int[BATCH * 2];
+        private int size;
+        private int gameNumber;
+        private ParseTask pending;
+
+        private Batches(Consumer<? super PgnGame> consumer) {
+            this.consumer = consumer;
+        }
+
+        private void add(ByteBuffer buffer, int start, int end) {
+            buffers.add(buffer);
+            bounds[size * 2] = start;
+            bounds[size * 2 + 1] = end;
+            if (++size == BATCH) {
+                submit();
+            }
+        }
+
+        private void submit() {
+            ParseTask task = new ParseTask(buffers.toArray(new ByteBuffer[0]), bounds,
+                    new PgnGame[size], gameNumber, 0, size);
+            pool.execute(task);
+            gameNumber += size;
+            buffers.clear();
+            bounds = new int[BATCH * 2];
+            size = 0;
+
+            deliver();
+            pending = task;
+        }
+
+        private void finish() {
+            if (size > 0) {
+                submit();
+            }
+            deliver();
+            pending = null;
+        }
+
+        private void deliver() {
+            if (pending == null) {
+                return;
+            }
+            pending.join();
+            for (PgnGame game : pending.games) {
+                consumer.accept(game);
+            }
+        }
+    }
+
+    /**
+     * Parses a range of a batch, splitting in half until the range is small enough
+     */
+    private static final class ParseTask extends RecursiveAction {
+
+        private final ByteBuffer[] buffers;
+        private final int[] bounds;
+        private final PgnGame[] games;
+        private final int firstGameNumber;
+        private final int from;
+        private final int to;
+
+        private ParseTask(ByteBuffer[] buffers, int[] bounds, PgnGame[] games,
+                          int firstGameNumber, int from, int to) {
+            this.buffers = buffers;
+            this.bounds = bounds;
+            this.games = games;
+            this.firstGameNumber = firstGameNumber;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > GAMES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                ForkJoinTask.invokeAll(
+                        new ParseTask(buffers, bounds, games, firstGameNumber, from, middle),
+                        new ParseTask(buffers, bounds, games, firstGameNumber, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                int start = bounds[i * 2];
+                byte[] bytes = new byte[bounds[i * 2 + 1] - start];
+                buffers[i].get(start, bytes);
+                try {
+                    games[i] = PgnParser.parse(new String(bytes, StandardCharsets.UTF_8));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException(
+                            "Game " + (firstGameNumber + i + 1) + ": " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package chess.pgn;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.PackedMove;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes games in export format: the Seven Tag Roster first, in its fixed
+ * order, then any other tags, then the movetext in SAN wrapped at 80 columns
+ * and ending with the result.
+ */
+public final class PgnWriter {
+
+    private static final List<String> SEVEN_TAG_ROSTER =
+            List.of("Event", "Site", "Date", "Round", "White", "Black", "Result");
+    private static final int LINE_LENGTH = 80;
+
+    private PgnWriter() {}
+
+    /**
+     * @param game game to write
+     * @return the game in PGN, followed by a blank line
+     * @throws IllegalArgumentException if one of the game's moves is not legal
+     */
+    public static String write(PgnGame game) {
+        StringBuilder out = new StringBuilder();
+        write(game, out);
+        return out.toString();
+    }
+
+    /**
+     * @param game game to write
+     * @param out where the game goes, followed by a blank line
+     * @throws IllegalArgumentException if one of the game's moves is not legal
+     * @throws UncheckedIOException if the output can't be written to
+     */
+    public static void write(PgnGame game, Appendable out) {
+        try {
+            writeTags(game, out);
+            out.append('\n');
+            writeMovetext(game, out);
+            out.append("\n\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeTags(PgnGame game, Appendable out) throws IOException {
+        Map<String, String> tags = game.getTags();
+        for (String name : SEVEN_TAG_ROSTER) {
+            String value = name.equals("Result") ? game.getResult() : tags.get(name);
+            writeTag(name, value != null ? value : defaultValue(name), out);
+        }
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            if (!SEVEN_TAG_ROSTER.contains(tag.getKey())) {
+                writeTag(tag.getKey(), tag.getValue(), out);
+            }
+        }
+    }
+
+    private static void writeTag(String name, String value, Appendable out) throws IOException {
+        out.append('[').append(name).append(" \"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\');
+            }
+            out.append(c);
+        }
+        out.append("\"]\n");
+    }
+
+    private static String defaultValue(String name) {
+        return name.equals("Date") ? "????.??.??" : "?";
+    }
+
+    private static void writeMovetext(PgnGame game, Appendable out) throws IOException {
+        ChessGame board = game.startingPosition();
+        int moveNumber = board.getFullmoveNumber();
+        boolean first = true;
+        int column = 0;
+
+        for (ChessMove move : game.getMoves()) {
+            StringBuilder token = new StringBuilder();
+            boolean white = board.getTeamTurn() == ChessGame.TeamColor.WHITE;
+            if (white) {
+                token.append(moveNumber).append(". ");
+            } else if (first) {
+                token.append(moveNumber).append("... ");
+            }
+            token.append(San.encode(board, move));
+            column = append(token, column, out);
+
+            board.doMove(PackedMove.fromChessMove(move));
+            if (!white) {
+                moveNumber++;
+            }
+            first = false;
+        }
+        append(game.getResult(), column, out);
+    }
+
+    /**
+     * Adds a token to the movetext, starting a new line rather than going past 80 columns
+     *
+     * @return the column the line ends at afterwards
+     */
+    private static int append(CharSequence token, int column, Appendable out) throws IOException {
+        if (column > 0 && column + 1 + token.length() > LINE_LENGTH) {
+            out.append('\n');
+            column = 0;
+        } else if (column > 0) {
+            out.append(' ');
+            column++;
+        }
+        out.append(token);
+        return column + token.length();
+    }
+}
@@ -0,0 +1,273 @@
+package chess.pgn;
+
+import chess.Bitboards;
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.PackedMove;
+
+/**
+ * Standard Algebraic Notation, the move format used by PGN: Nf3, exd5,
+ * O-O, e8=Q+. Both directions generate the legal moves of the position once
+ * and work from that list, so the disambiguation a move needs (Nbd2, R1e2,
+ * Qh4e1) is read off the other moves of the same piece type to the same
+ * square instead of being searched for per move.
+ */
+public final class San {
+
+    // move lists are reused per thread, so the reader's workers don't allocate one per ply
+    private static final ThreadLocal<int[]> BUFFERS =
+            ThreadLocal.withInitial(() -> new int[ChessGame.MAX_MOVES]);
+    // copy of the caller's game that encoding works on, so the caller's game is only ever read
+    private static final ThreadLocal<ChessGame> SCRATCH = ThreadLocal.withInitial(ChessGame::new);
+
+    private San() {}
+
+    /**
+     * @param game game in the position before the move, only read, so several
+     * threads may encode moves from it at once as long as none changes it
+     * @param move legal move for the team whose turn it is
+     * @return the move in SAN, including + or # when it gives check or mate
+     * @throws IllegalArgumentException if the move is not legal
+     */
+    public static String encode(ChessGame game, ChessMove move) {
+        return encode(game, PackedMove.fromChessMove(move));
+    }
+
+    /**
+     * @param game game in the position before the move, only read, so several
+     * threads may encode moves from it at once as long as none changes it
+     * @param move packed legal move for the team whose turn it is, flags are optional
+     * @return the move in SAN, including + or # when it gives check or mate
+     * @throws IllegalArgumentException if the move is not legal
+     */
+    public static String encode(ChessGame game, int move) {
+        // everything below runs on a copy, even move generation writes to the game's generator
+        ChessGame scratch = SCRATCH.get();
+        game.copyInto(scratch);
+        int[] moves = BUFFERS.get();
+        int count = scratch.legalMoves(scratch.getTeamTurn(), moves, 0);
+
+        // find the generator's copy of the move, which carries the capture and castle flags
+        int wanted = PackedMove.withoutFlags(move);
+        int legal = -1;
+        for (int i = 0; i < count; i++) {
+            if (PackedMove.withoutFlags(moves[i]) == wanted) {
+                legal = moves[i];
+                break;
+            }
+        }
+        if (legal == -1) {
+            throw new IllegalArgumentException("Illegal move: " + PackedMove.toString(move));
+        }
+
+        StringBuilder san = new StringBuilder(8);
+        appendMove(san, scratch.getBoard(), legal, moves, count);
+
+        // check and mate are only known after the move is played
+        ChessGame.TeamColor opponent = scratch.getTeamTurn() == ChessGame.TeamColor.WHITE ?
+                ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        scratch.doMove(legal);
+        if (scratch.isInCheck(opponent)) {
+            san.append(scratch.hasAnyLegalMove(opponent) ? '+' : '#');
+        }
+        return san.toString();
+    }
+
+    /**
+     * Reads a move in SAN. Check marks and annotations such as ! or ?! are
+     * ignored, castling may be written with zeros, and the = before a
+     * promotion piece may be left out.
+     *
+     * @param game game in the position the move is played from, left unchanged
+     * @param san move text
+     * @return the packed legal move, with the generator's flags
+     * @throws IllegalArgumentException if the text is not a legal move or
+     * matches more than one
+     */
+    public static int decode(ChessGame game, CharSequence san) {
+        int end = san.length();
+        while (end > 0 && "+#!?".indexOf(san.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        if (end < 2) {
+            throw new IllegalArgumentException("Not a move: " + san);
+        }
+
+        int[] moves = BUFFERS.get();
+        int count = game.legalMoves(game.getTeamTurn(), moves, 0);
+        ChessBoard board = game.getBoard();
+
+        // O-O goes to the g file, O-O-O to the c file
+        char first = san.charAt(0);
+        if (first == 'O' || first == '0') {
+            int file = end >= 5 ? 2 : 6;
+            for (int i = 0; i < count; i++) {
+                if ((moves[i] & PackedMove.CASTLE) != 0 && (PackedMove.to(moves[i]) & 7) == file) {
+                    return moves[i];
+                }
+            }
+            throw new IllegalArgumentException("Illegal move: " + san);
+        }
+
+        ChessPiece.PieceType type = pieceType(first);
+        int start = type == null ? 0 : 1;
+        if (type == null) {
+            type = ChessPiece.PieceType.PAWN;
+        }
+
+        // a trailing piece letter is the promotion, with or without the =
+        ChessPiece.PieceType promotion = null;
+        if (type == ChessPiece.PieceType.PAWN && pieceType(san.charAt(end - 1)) != null) {
+            promotion = pieceType(san.charAt(end - 1));
+            end--;
+            if (end > 0 && san.charAt(end - 1) == '=') {
+                end--;
+            }
+        }
+
+        // the destination is the last square, anything before it narrows down the start
+        if (end - start < 2) {
+            throw new IllegalArgumentException("Not a move: " + san);
+        }
+        int toFile = san.charAt(end - 2) - 'a';
+        int toRank = san.charAt(end - 1) - '1';
+        if (toFile < 0 || toFile > 7 || toRank < 0 || toRank > 7) {
+            throw new IllegalArgumentException("Not a move: " + san);
+        }
+        int to = Bitboards.square(toRank + 1, toFile + 1);
+
+        int fromFile = -1;
+        int fromRank = -1;
+        for (int i = start; i < end - 2; i++) {
+            char c = san.charAt(i);
+            if (c >= 'a' && c <= 'h') {
+                fromFile = c - 'a';
+            } else if (c >= '1' && c <= '8') {
+                fromRank = c - '1';
+            } else if (c != 'x' && c != '-' && c != ':') {
+                throw new IllegalArgumentException("Not a move: " + san);
+            }
+        }
+
+        int found = -1;
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            int from = PackedMove.from(move);
+            if (PackedMove.to(move) != to || PackedMove.promotion(move) != promotion
+                    || board.getPiece(from).getPieceType() != type
+                    || (fromFile >= 0 && (from & 7) != fromFile)
+                    || (fromRank >= 0 && (from >>> 3) != fromRank)) {
+                continue;
+            }
+            if (found != -1) {
+                throw new IllegalArgumentException("Ambiguous move: " + san);
+            }
+            found = move;
+        }
+        if (found == -1) {
+            throw new IllegalArgumentException("Illegal move: " + san);
+        }
+        return found;
+    }
+
+    /**
+     * @param game game in the position the move is played from, left unchanged
+     * @param san move text
+     * @return the legal move the text describes
+     * @throws IllegalArgumentException if the text is not a legal move or
+     * matches more than one
+     */
+    public static ChessMove toMove(ChessGame game, CharSequence san) {
+        return PackedMove.toChessMove(decode(game, san));
+    }
+
+    /**
+     * Writes everything but the check mark. The legal moves are passed in so
+     * the disambiguation can be worked out from the pieces of the same type
+     * that reach the same square.
+     */
+    private static void appendMove(StringBuilder san, ChessBoard board, int move, int[] moves, int count) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+
+        if ((move & PackedMove.CASTLE) != 0) {
+            san.append((to & 7) == 6 ? "O-O" : "O-O-O");
+            return;
+        }
+
+        ChessPiece.PieceType type = board.getPiece(from).getPieceType();
+        if (type == ChessPiece.PieceType.PAWN) {
+            // pawn captures always name the file they came from
+            if (PackedMove.isCapture(move)) {
+                san.append(file(from));
+            }
+        } else {
+            san.append(symbol(type));
+            boolean ambiguous = false;
+            boolean sameFile = false;
+            boolean sameRank = false;
+            for (int i = 0; i < count; i++) {
+                int other = PackedMove.from(moves[i]);
+                if (other == from || PackedMove.to(moves[i]) != to
+                        || board.getPiece(other).getPieceType() != type) {
+                    continue;
+                }
+                ambiguous = true;
+                sameFile |= (other & 7) == (from & 7);
+                sameRank |= (other >>> 3) == (from >>> 3);
+            }
+            // the file if it is enough, otherwise the rank, otherwise both
+            if (ambiguous && (!sameFile || sameRank)) {
+                san.append(file(from));
+            }
+            if (ambiguous && sameFile) {
+                san.append(rank(from));
+            }
+        }
+
+        if (PackedMove.isCapture(move)) {
+            san.append('x');
+        }
+        san.append(file(to)).append(rank(to));
+
+        ChessPiece.PieceType promotion = PackedMove.promotion(move);
+        if (promotion != null) {
+            san.append('=').append(symbol(promotion));
+        }
+    }
+
+    private static char file(int square) {
+        return (char) ('a' + (square & 7));
+    }
+
+    private static char rank(int square) {
+        return (char) ('1' + (square >>> 3));
+    }
+
+    private static char symbol(ChessPiece.PieceType type) {
+        return switch (type) {
+            case KING -> 'K';
+            case QUEEN -> 'Q';
+            case ROOK -> 'R';
+            case BISHOP -> 'B';
+            case KNIGHT -> 'N';
+            case PAWN -> 'P';
+        };
+    }
+
+    /**
+     * @return the piece type for an upper case SAN letter, or null for anything else
+     */
+    private static ChessPiece.PieceType pieceType(char c) {
+        return switch (c) {
+            case 'K' -> ChessPiece.PieceType.KING;
+            case 'Q' -> ChessPiece.PieceType.QUEEN;
+            case 'R' -> ChessPiece.PieceType.ROOK;
+            case 'B' -> ChessPiece.PieceType.BISHOP;
+            case 'N' -> ChessPiece.PieceType.KNIGHT;
+            default -> null;
+        };
+    }
+}
@@ -1,16 +1,37 @@
 package websocket.messages;
 
 import chess.ChessGame;
+import chess.PositionSnapshot;
 
 public class LoadGameMessage extends ServerMessage {
-    private final ChessGame game;
+    // serialized in the same shape as a ChessGame
+    private final PositionSnapshot game;
 
+    /**
+     * Sends the game's last published snapshot
+     */
     public  LoadGameMessage(ChessGame game) {
+        this(game.snapshot());
+    }
+
+    /**
+     * Sends a snapshot of a game, written straight to JSON, so the game itself
+     * can keep changing while the message waits to be serialized and one
+     * message can go to every client
+     */
+    public LoadGameMessage(PositionSnapshot snapshot) {
         super(ServerMessageType.LOAD_GAME);
-        this.game = game;
+        this.game = snapshot;
     }
 
+    /**
+     * @return a new game in the position sent, repetition history included
+     */
     public ChessGame getGame() {
+        return game.toGame();
+    }
+
+    public PositionSnapshot getSnapshot() {
         return game;
     }
-}
\ No newline at end of file
+}
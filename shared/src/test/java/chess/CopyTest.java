@@ -0,0 +1,50 @@
+package chess;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Copies carry the whole game state and never share anything mutable with the original
+ */
+public class CopyTest {
+
+    @Test
+    void copyKeepsEveryPartOfTheState() throws InvalidMoveException {
+        ChessGame game = ChessGame.fromFen("r3k2r/8/8/8/4p3/8/3P4/R3K2R w Kq - 7 30");
+        game.makeMove(new ChessMove(ChessPosition.of(2, 4), ChessPosition.of(4, 4), null));
+
+        ChessGame copy = game.copy();
+        assertEquals(game, copy);
+        assertEquals(game.toFen(), copy.toFen());
+        assertEquals(game.zobristKey(), copy.zobristKey());
+        assertEquals(game.repetitionCount(), copy.repetitionCount());
+        assertEquals(game.perft(3), copy.perft(3));
+
+        // moves in the copy leave the original alone
+        copy.makeMove(new ChessMove(ChessPosition.of(4, 5), ChessPosition.of(3, 4), null));
+        assertNotEquals(game.toFen(), copy.toFen());
+        assertEquals("r3k2r/8/8/8/3Pp3/8/8/R3K2R b Kq d3 0 30", game.toFen());
+        assertEquals(ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN),
+                game.getBoard().getPiece(ChessPosition.of(4, 4)));
+    }
+
+    @Test
+    void copyIntoReusesTheTarget() {
+        ChessGame kiwipete = ChessGame.fromFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        ChessGame target = new ChessGame();
+        ChessBoard board = target.getBoard();
+        assertEquals(ChessGame.GameStatus.NORMAL, target.status());
+
+        kiwipete.copyInto(target);
+        assertSame(board, target.getBoard());
+        assertEquals(kiwipete.toFen(), target.toFen());
+        assertEquals(kiwipete.getBoard().zobristKey(), target.getBoard().zobristKey());
+        assertEquals(kiwipete.snapshot(), target.snapshot());
+        assertEquals(97862, target.perft(3));
+
+        new ChessGame().copyInto(target);
+        assertEquals(new ChessGame().toFen(), target.toFen());
+        assertEquals(20, target.legalMoveStream(ChessGame.TeamColor.WHITE).count());
+    }
+}
@@ -0,0 +1,99 @@
+package chess;
+
+import org.junit.jupiter.api.Test;
+import passoff.chess.TestUtilities;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * FEN import and export agree with each other and with the game's own state
+ */
+public class FenTest {
+
+    private static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    @Test
+    void startPosition() {
+        assertEquals(START, new ChessGame().toFen());
+        assertEquals(new ChessGame(), ChessGame.fromFen(START));
+        assertEquals(new ChessGame().zobristKey(), ChessGame.fromFen(START).zobristKey());
+        assertEquals("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR", new ChessGame().getBoard().toFen());
+    }
+
+    @Test
+    void roundTrip() {
+        String[] records = {
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+                "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+                "8/8/1k6/2b5/2pP4/8/5K2/8 b - d3 0 1",
+                "r3k2r/8/3Q4/8/8/5q2/8/R3K2R b Kq - 37 84",
+        };
+        for (String fen : records) {
+            assertEquals(fen, ChessGame.fromFen(fen).toFen());
+        }
+    }
+
+    @Test
+    void movesUpdateFen() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+        assertEquals("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1", game.toFen());
+
+        game.makeMove(new ChessMove(ChessPosition.of(8, 7), ChessPosition.of(6, 6), null));
+        game.makeMove(new ChessMove(ChessPosition.of(1, 5), ChessPosition.of(2, 5), null));
+        assertEquals("rnbqkb1r/pppppppp/5n2/8/4P3/8/PPPPKPPP/RNBQ1BNR b kq - 2 2", game.toFen());
+
+        game.unmakeMove();
+        game.unmakeMove();
+        assertEquals("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1", game.toFen());
+    }
+
+    @Test
+    void loadMatchesDiagram() {
+        ChessBoard diagram = TestUtilities.loadBoard("""
+                |r| | | |k| | |r|
+                |p| |p|p|q|p|b| |
+                |b|n| | |p|n|p| |
+                | | | |P|N| | | |
+                | |p| | |P| | | |
+                | | |N| | |Q| |p|
+                |P|P|P|B|B|P|P|P|
+                |R| | | |K| | |R|
+                """);
+        ChessBoard board = ChessBoard.fromFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -");
+        assertEquals(diagram, board);
+        assertEquals(diagram.zobristKey(), board.zobristKey());
+    }
+
+    @Test
+    void epdRecords() {
+        ChessGame game = ChessGame.fromFen("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - bm Rxf4; id \"position 3\";");
+        assertEquals("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", game.toFen());
+        assertEquals(14, game.perft(1));
+
+        // loading into an existing game replaces everything
+        game.loadFen(START);
+        assertEquals(new ChessGame(), game);
+        assertEquals(START, game.toFen());
+    }
+
+    @Test
+    void malformedRecords() {
+        String[] records = {
+                "",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/9/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "rnbqkbnr/ppppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNX w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR x KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQxq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq e4 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 0",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w",
+        };
+        for (String fen : records) {
+            assertThrows(IllegalArgumentException.class, () -> ChessGame.fromFen(fen), fen);
+        }
+    }
+}
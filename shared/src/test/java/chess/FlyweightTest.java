@@ -0,0 +1,58 @@
+package chess;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The static factories and Gson hand out shared instances, while the public
+ * constructors keep creating new ones.
+ */
+public class FlyweightTest {
+
+    @Test
+    void factoriesReturnSharedInstances() {
+        assertSame(ChessPosition.of(2, 5), ChessPosition.of(2, 5));
+        assertNotSame(new ChessPosition(2, 5), ChessPosition.of(2, 5));
+        assertEquals(new ChessPosition(2, 5), ChessPosition.of(2, 5));
+        assertEquals(new ChessPosition(0, 9), ChessPosition.of(0, 9));
+
+        ChessPiece queen = ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.QUEEN);
+        assertSame(queen, ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.QUEEN));
+        assertEquals(new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.QUEEN), queen);
+
+        ChessMove move = ChessMove.of(new ChessPosition(7, 1), new ChessPosition(8, 1), ChessPiece.PieceType.KNIGHT);
+        assertSame(move, ChessMove.of(ChessPosition.of(7, 1), ChessPosition.of(8, 1), ChessPiece.PieceType.KNIGHT));
+        assertSame(ChessPosition.of(8, 1), move.getEndPosition());
+        assertNotSame(move, ChessMove.of(ChessPosition.of(7, 1), ChessPosition.of(8, 1), null));
+    }
+
+    @Test
+    void generatedMovesAreShared() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        ChessMove first = game.validMoves(ChessPosition.of(2, 5)).iterator().next();
+        assertSame(first, ChessMove.of(first.getStartPosition(), first.getEndPosition(), null));
+
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        assertSame(ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN),
+                game.getBoard().getPiece(new ChessPosition(4, 5)));
+    }
+
+    @Test
+    void gsonReadsSharedInstances() {
+        Gson gson = new Gson();
+        ChessGame game = gson.fromJson(gson.toJson(new ChessGame()), ChessGame.class);
+
+        ChessBoard board = game.getBoard();
+        for (int col = 1; col <= 8; col++) {
+            assertSame(ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN),
+                    board.getPiece(ChessPosition.of(2, col)));
+        }
+        assertEquals(new ChessGame(), game);
+
+        ChessMove move = ChessMove.of(ChessPosition.of(7, 2), ChessPosition.of(8, 2), ChessPiece.PieceType.QUEEN);
+        assertSame(move, gson.fromJson(gson.toJson(move), ChessMove.class));
+        assertSame(ChessPosition.of(3, 3), gson.fromJson(gson.toJson(new ChessPosition(3, 3)), ChessPosition.class));
+    }
+}
@@ -0,0 +1,161 @@
+package chess;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+import passoff.chess.TestUtilities;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link ChessGame#status()} agrees with the individual queries and notices
+ * every kind of change to the position it was cached for.
+ */
+public class GameStatusTest {
+
+    @Test
+    void startIsNormal() {
+        ChessGame game = new ChessGame();
+        assertEquals(ChessGame.GameStatus.NORMAL, game.status());
+        assertSame(game.status(), game.status());
+        assertFalse(game.status().isGameOver());
+    }
+
+    @Test
+    void foolsMate() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        play(game, 2, 6, 3, 6);
+        play(game, 7, 5, 5, 5);
+        play(game, 2, 7, 4, 7);
+        assertEquals(ChessGame.GameStatus.NORMAL, game.status());
+
+        play(game, 8, 4, 4, 8);
+        assertEquals(ChessGame.GameStatus.CHECKMATE, game.status());
+        assertTrue(game.isInCheckmate(ChessGame.TeamColor.WHITE));
+        assertFalse(game.isInStalemate(ChessGame.TeamColor.WHITE));
+
+        // taking the move back must not leave the cached checkmate behind
+        game.unmakeMove();
+        assertEquals(ChessGame.GameStatus.NORMAL, game.status());
+    }
+
+    @Test
+    void checkAndStalemate() {
+        ChessGame game = new ChessGame();
+        game.setBoard(TestUtilities.loadBoard("""
+                | | | | | | | |k|
+                | | | | | | | | |
+                | | | | |Q| | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | |K| | | |
+                """));
+        game.setTeamTurn(ChessGame.TeamColor.BLACK);
+        assertEquals(ChessGame.GameStatus.NORMAL, game.status());
+
+        // same board object, changed in place
+        game.getBoard().addPiece(ChessPosition.of(6, 5), null);
+        game.getBoard().addPiece(ChessPosition.of(7, 7), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.QUEEN));
+        assertEquals(ChessGame.GameStatus.CHECK, game.status());
+
+        game.getBoard().addPiece(ChessPosition.of(7, 7), null);
+        game.getBoard().addPiece(ChessPosition.of(7, 6), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.QUEEN));
+        game.getBoard().addPiece(ChessPosition.of(6, 7), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
+        game.getBoard().addPiece(ChessPosition.of(1, 5), null);
+        assertEquals(ChessGame.GameStatus.STALEMATE, game.status());
+        assertTrue(game.status().isGameOver());
+
+        game.setTeamTurn(ChessGame.TeamColor.WHITE);
+        assertEquals(ChessGame.GameStatus.NORMAL, game.status());
+    }
+
+    @Test
+    void insufficientMaterial() {
+        ChessGame game = new ChessGame();
+        game.setBoard(TestUtilities.loadBoard("""
+                | | | | | | | |k|
+                | | | | | | | | |
+                | | | | | |b| | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | |B| |K| | | |
+                """));
+        // bishops on c1 and f6 both stand on dark squares
+        assertEquals(ChessGame.GameStatus.INSUFFICIENT_MATERIAL, game.status());
+
+        game.getBoard().addPiece(ChessPosition.of(1, 3), null);
+        game.getBoard().addPiece(ChessPosition.of(1, 4), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.BISHOP));
+        assertEquals(ChessGame.GameStatus.NORMAL, game.status());
+
+        game.getBoard().addPiece(ChessPosition.of(1, 4), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT));
+        game.getBoard().addPiece(ChessPosition.of(6, 6), null);
+        assertEquals(ChessGame.GameStatus.INSUFFICIENT_MATERIAL, game.status());
+    }
+
+    @Test
+    void lazyMovesMatchValidMoves() {
+        ChessGame game = new ChessGame();
+        assertTrue(game.hasAnyLegalMove(ChessGame.TeamColor.WHITE));
+        assertEquals(20, game.legalMoveStream(ChessGame.TeamColor.WHITE).count());
+        assertEquals(game.validMoves(ChessPosition.of(1, 2)).size(),
+                game.legalMoveStream(ChessGame.TeamColor.WHITE)
+                        .filter(move -> move.getStartPosition().equals(ChessPosition.of(1, 2)))
+                        .count());
+        assertTrue(game.legalMoveStream(ChessGame.TeamColor.BLACK).findFirst().isPresent());
+    }
+
+    @Test
+    void threefoldRepetition() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        for (int i = 0; i < 2; i++) {
+            play(game, 1, 7, 3, 6);
+            play(game, 8, 7, 6, 6);
+            play(game, 3, 6, 1, 7);
+            assertFalse(game.isGameOver());
+            play(game, 6, 6, 8, 7);
+        }
+        // the start position has now been seen three times
+        assertEquals(3, game.repetitionCount());
+        assertEquals(ChessGame.GameStatus.THREEFOLD_REPETITION, game.status());
+        assertTrue(game.isGameOver());
+        assertThrows(InvalidMoveException.class, () -> play(game, 2, 5, 4, 5));
+
+        // the history travels with a stored game
+        Gson gson = new Gson();
+        ChessGame loaded = gson.fromJson(gson.toJson(game), ChessGame.class);
+        assertEquals(ChessGame.GameStatus.THREEFOLD_REPETITION, loaded.status());
+
+        game.unmakeMove();
+        assertFalse(game.isGameOver());
+    }
+
+    @Test
+    void fiftyMoveRule() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        play(game, 1, 7, 3, 6);
+        assertEquals(1, game.getHalfmoveClock());
+        play(game, 7, 5, 5, 5);
+        assertEquals(0, game.getHalfmoveClock());
+
+        // the clock is stored with the game, pretend 99 quiet plies were played
+        Gson gson = new Gson();
+        JsonObject json = gson.toJsonTree(game).getAsJsonObject();
+        json.addProperty("halfmoveClock", 99);
+        ChessGame loaded = gson.fromJson(json, ChessGame.class);
+        assertEquals(99, loaded.getHalfmoveClock());
+        assertEquals(ChessGame.GameStatus.NORMAL, loaded.status());
+
+        play(loaded, 3, 6, 1, 7);
+        assertEquals(ChessGame.GameStatus.FIFTY_MOVE_RULE, loaded.status());
+        assertTrue(loaded.isGameOver());
+    }
+
+    private static void play(ChessGame game, int startRow, int startCol, int endRow, int endCol)
+            throws InvalidMoveException {
+        game.makeMove(new ChessMove(ChessPosition.of(startRow, startCol), ChessPosition.of(endRow, endCol), null));
+    }
+}
@@ -0,0 +1,176 @@
+package chess;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Perft node counts for standard positions. A wrong count means the rules
+ * engine generates too many or too few legal moves somewhere in the tree.
+ * Throughput is measured by {@link ParallelPerft#main}, not here.
+ * <p>
+ * Positions are FEN records, and counts are the published ones from the Chess
+ * Programming Wiki perft results page and the well-known "tricky positions" list.
+ */
+public class PerftTest {
+
+    @Test
+    void startPosition() {
+        ChessGame game = new ChessGame();
+        assertPerft("start", game, 1, 20);
+        assertPerft("start", game, 2, 400);
+        assertPerft("start", game, 3, 8902);
+        assertPerft("start", game, 4, 197281);
+    }
+
+    @Test
+    void parallelMatchesSequential() {
+        ChessGame kiwipete = ChessGame.fromFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        String before = kiwipete.toFen();
+        try (ParallelPerft perft = new ParallelPerft(4, 16, 2)) {
+            assertEquals(197281, perft.run(new ChessGame(), 4).nodes());
+            assertEquals(4085603, perft.run(kiwipete, 4).nodes());
+            // the second run is answered from the cache the first one filled
+            assertEquals(4085603, perft.run(kiwipete, 4).nodes());
+        }
+        try (ParallelPerft perft = new ParallelPerft(2, 12, 1)) {
+            assertEquals(2812, perft.run(ChessGame.fromFen("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1"), 3).nodes());
+        }
+        assertEquals(before, kiwipete.toFen());
+    }
+
+    @Test
+    void kiwipete() {
+        ChessGame game = ChessGame.fromFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        assertPerft("kiwipete", game, 1, 48);
+        assertPerft("kiwipete", game, 2, 2039);
+        assertPerft("kiwipete", game, 3, 97862);
+        assertIsLegalMatchesGenerator(game, 2);
+    }
+
+    @Test
+    void endgameRookAndPawns() {
+        ChessGame game = ChessGame.fromFen("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1");
+        assertIsLegalMatchesGenerator(game, 3);
+        assertPerft("position 3", game, 1, 14);
+        assertPerft("position 3", game, 2, 191);
+        assertPerft("position 3", game, 3, 2812);
+        assertPerft("position 3", game, 4, 43238);
+    }
+
+    @Test
+    void promotionsAndBlackCastling() {
+        ChessGame game = ChessGame.fromFen("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1");
+        assertPerft("position 4", game, 1, 6);
+        assertPerft("position 4", game, 2, 264);
+        assertPerft("position 4", game, 3, 9467);
+    }
+
+    @Test
+    void promotionCaptures() {
+        ChessGame game = ChessGame.fromFen("rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8");
+        assertPerft("position 5", game, 1, 44);
+        assertPerft("position 5", game, 2, 1486);
+        assertPerft("position 5", game, 3, 62379);
+    }
+
+    @Test
+    void castledMiddlegame() {
+        ChessGame game = ChessGame.fromFen("r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10");
+        assertPerft("position 6", game, 1, 46);
+        assertPerft("position 6", game, 2, 2079);
+        assertPerft("position 6", game, 3, 89890);
+    }
+
+    @Test
+    void enPassantWouldExposeKing() {
+        ChessGame game = ChessGame.fromFen("3k4/3p4/8/K1P4r/8/8/8/8 b - - 0 1");
+        assertPerft("illegal en passant", game, 6, 1134888);
+    }
+
+    @Test
+    void enPassantCaptureGivesCheck() {
+        ChessGame game = ChessGame.fromFen("8/8/1k6/2b5/2pP4/8/5K2/8 b - d3 0 1");
+        assertPerft("en passant check", game, 6, 1440467);
+    }
+
+    @Test
+    void castlingGivesCheck() {
+        ChessGame game = ChessGame.fromFen("5k2/8/8/8/8/8/8/4K2R w K - 0 1");
+        assertPerft("castling check", game, 6, 661072);
+    }
+
+    @Test
+    void castlingRightsLost() {
+        ChessGame game = ChessGame.fromFen("r3k2r/1b4bq/8/8/8/8/7B/R3K2R w KQkq - 0 1");
+        assertPerft("castling rights", game, 4, 1274206);
+    }
+
+    @Test
+    void castlingThroughAttack() {
+        ChessGame game = ChessGame.fromFen("r3k2r/8/3Q4/8/8/5q2/8/R3K2R b KQkq - 0 1");
+        assertPerft("castling prevented", game, 4, 1720476);
+    }
+
+    @Test
+    void promoteOutOfCheck() {
+        ChessGame game = ChessGame.fromFen("2K2r2/4P3/8/8/8/8/8/3k4 w - - 0 1");
+        assertPerft("promote out of check", game, 6, 3821001);
+    }
+
+    @Test
+    void underpromoteToGiveCheck() {
+        ChessGame game = ChessGame.fromFen("8/P1k5/K7/8/8/8/8/8 w - - 0 1");
+        assertPerft("underpromotion", game, 6, 92683);
+    }
+
+    @Test
+    void divideSumsToPerft() {
+        ChessGame game = new ChessGame();
+        Map<ChessMove, Long> divide = game.perftDivide(3);
+
+        assertEquals(20, divide.size());
+        assertEquals(8902, divide.values().stream().mapToLong(Long::longValue).sum());
+        assertEquals(new ChessGame(), game, "perft should leave the game as it found it");
+    }
+
+    /**
+     * Asks isLegal about every from, to and promotion combination in each
+     * position of the tree and compares the answers with the generated moves
+     */
+    private static void assertIsLegalMatchesGenerator(ChessGame game, int depth) {
+        int[] legal = new int[ChessGame.MAX_MOVES];
+        int count = game.legalMoves(game.getTeamTurn(), legal, 0);
+
+        Set<ChessMove> generated = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            generated.add(PackedMove.toChessMove(legal[i]));
+        }
+        ChessPiece.PieceType[] promotions = {null, ChessPiece.PieceType.QUEEN, ChessPiece.PieceType.ROOK,
+                ChessPiece.PieceType.BISHOP, ChessPiece.PieceType.KNIGHT, ChessPiece.PieceType.KING};
+        for (int from = 0; from < 64; from++) {
+            for (int to = 0; to < 64; to++) {
+                for (ChessPiece.PieceType promotion : promotions) {
+                    ChessMove move = new ChessMove(Bitboards.position(from), Bitboards.position(to), promotion);
+                    assertEquals(generated.contains(move), game.isLegal(move), move.toString());
+                }
+            }
+        }
+
+        if (depth > 1) {
+            for (int i = 0; i < count; i++) {
+                game.doMove(legal[i]);
+                assertIsLegalMatchesGenerator(game, depth - 1);
+                game.undoMove();
+            }
+        }
+    }
+
+    private static void assertPerft(String name, ChessGame game, int depth, long expected) {
+        assertEquals(expected, game.perft(depth), name + " perft(" + depth + ")");
+    }
+}
@@ -0,0 +1,120 @@
+package chess;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+import websocket.messages.LoadGameMessage;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Snapshots keep the position they were taken in, whatever the game does afterwards
+ */
+public class PositionSnapshotTest {
+
+    @Test
+    void snapshotIsUnchangedByLaterMoves() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        PositionSnapshot start = game.snapshot();
+        assertSame(start, game.snapshot());
+
+        game.makeMove(new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+        PositionSnapshot afterE4 = game.snapshot();
+        assertNotSame(start, afterE4);
+
+        assertEquals(new ChessGame().toFen(), start.toFen());
+        assertEquals(game.toFen(), afterE4.toFen());
+        assertEquals(game.zobristKey(), afterE4.zobristKey());
+        assertEquals(ChessPosition.of(3, 5), afterE4.getEnPassantTarget());
+        assertNull(afterE4.getPiece(ChessPosition.of(2, 5)));
+        assertNotNull(start.getPiece(ChessPosition.of(2, 5)));
+
+        game.unmakeMove();
+        assertEquals(start, game.snapshot());
+        assertEquals(game.toFen(), game.snapshot().toFen());
+    }
+
+    @Test
+    void inPlaceMovesShowOncePublished() {
+        ChessGame game = ChessGame.fromFen("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 3 20");
+        PositionSnapshot before = game.snapshot();
+        assertTrue(before.canCastle(ChessGame.TeamColor.BLACK, false));
+
+        game.doMove(PackedMove.encode(Bitboards.square(1, 1), Bitboards.square(8, 1)));
+        assertSame(before, game.snapshot());
+        PositionSnapshot after = game.publish();
+        assertSame(after, game.snapshot());
+        assertEquals(game.toFen(), after.toFen());
+        assertFalse(after.canCastle(ChessGame.TeamColor.BLACK, false));
+        assertTrue(after.canCastle(ChessGame.TeamColor.BLACK, true));
+        assertEquals("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 3 20", before.toFen());
+    }
+
+    @Test
+    void toGameRebuildsThePosition() {
+        ChessGame game = ChessGame.fromFen("8/8/1k6/2b5/2pP4/8/5K2/8 b - d3 0 1");
+        game.setGameOver(true);
+        ChessGame copy = game.snapshot().toGame();
+        assertEquals(game, copy);
+        assertEquals(game.toFen(), copy.toFen());
+        assertTrue(copy.isGameOver());
+    }
+
+    @Test
+    void readersNeverSeeAMoveHalfMade() throws Exception {
+        ChessGame game = new ChessGame();
+        ChessMove e4 = new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null);
+        String start = game.toFen();
+        game.makeMove(e4);
+        Set<String> published = Set.of(start, game.toFen());
+        game.unmakeMove();
+
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> torn = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (!done.get() && torn.get() == null) {
+                PositionSnapshot snapshot = game.snapshot();
+                String fen = snapshot.toFen();
+                long pawns = snapshot.getBitboard(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN);
+                if (!published.contains(fen) || Long.bitCount(pawns) != 8) {
+                    torn.set(fen);
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 20_000 && torn.get() == null; i++) {
+            game.makeMove(e4);
+            game.unmakeMove();
+            // moves made in place stay private until published
+            game.doMove(PackedMove.fromChessMove(e4));
+            game.undoMove();
+        }
+        done.set(true);
+        reader.join();
+        assertNull(torn.get());
+    }
+
+    @Test
+    void serializesAsAGameWithItsHistory() throws InvalidMoveException {
+        Gson gson = new Gson();
+        ChessGame fromFen = ChessGame.fromFen("r3k2r/8/8/8/4P3/8/8/R3K2R b Kq e3 3 10");
+        assertEquals(gson.toJson(fromFen), gson.toJson(fromFen.snapshot()));
+
+        // knights out and back twice, the last move still to come
+        ChessGame game = new ChessGame();
+        int[][] shuffle = {{1, 7, 3, 6}, {8, 7, 6, 6}, {3, 6, 1, 7}, {6, 6, 8, 7}};
+        for (int ply = 0; ply < 7; ply++) {
+            int[] m = shuffle[ply % 4];
+            game.makeMove(new ChessMove(ChessPosition.of(m[0], m[1]), ChessPosition.of(m[2], m[3]), null));
+        }
+
+        String json = gson.toJson(new LoadGameMessage(game.snapshot()));
+        ChessGame received = gson.fromJson(json, LoadGameMessage.class).getGame();
+        assertEquals(game.toFen(), received.toFen());
+        received.makeMove(new ChessMove(ChessPosition.of(6, 6), ChessPosition.of(8, 7), null));
+        assertEquals(ChessGame.GameStatus.THREEFOLD_REPETITION, received.status());
+    }
+}
@@ -0,0 +1,87 @@
+package chess;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The incrementally updated keys have to agree with keys built from scratch,
+ * and have to tell apart the game state that board equality ignores.
+ */
+public class ZobristTest {
+
+    @Test
+    void unmakeRestoresKey() {
+        ChessGame game = new ChessGame();
+        long start = game.zobristKey();
+
+        int[] moves = new int[ChessGame.MAX_MOVES];
+        int count = game.legalMoves(game.getTeamTurn(), moves, 0);
+        for (int i = 0; i < count; i++) {
+            game.doMove(moves[i]);
+            assertNotEquals(start, game.zobristKey(), PackedMove.toString(moves[i]));
+            game.undoMove();
+            assertEquals(start, game.zobristKey(), PackedMove.toString(moves[i]));
+        }
+    }
+
+    @Test
+    void transpositionsShareKey() throws InvalidMoveException {
+        ChessGame knightsFirst = play("g1f3", "g8f6", "b1c3", "b8c6");
+        ChessGame otherOrder = play("b1c3", "b8c6", "g1f3", "g8f6");
+
+        assertEquals(knightsFirst.zobristKey(), otherOrder.zobristKey());
+        assertEquals(knightsFirst, otherOrder);
+        assertEquals(knightsFirst.hashCode(), otherOrder.hashCode());
+    }
+
+    @Test
+    void incrementalKeyMatchesRebuiltKey() throws InvalidMoveException {
+        ChessGame game = play("e2e4", "d7d5", "e4d5", "g8f6", "f1b5", "c7c6", "d5c6", "d8d2", "b1d2", "b8a6",
+                "c6b7", "c8d7", "b7a8q");
+
+        Gson gson = new Gson();
+        ChessGame loaded = gson.fromJson(gson.toJson(game), ChessGame.class);
+        assertEquals(game.getBoard().zobristKey(), loaded.getBoard().zobristKey());
+        assertEquals(game.zobristKey(), loaded.zobristKey());
+    }
+
+    @Test
+    void keyCoversGameState() throws InvalidMoveException {
+        // same pieces, different side to move
+        ChessGame black = play("e2e4");
+        ChessGame white = play("e2e4");
+        white.setTeamTurn(ChessGame.TeamColor.WHITE);
+        assertEquals(black.getBoard(), white.getBoard());
+        assertNotEquals(black.zobristKey(), white.zobristKey());
+
+        // knights out and back loses nothing, the king stepping out and back loses castling
+        ChessGame knights = play("g1f3", "g8f6", "f3g1", "f6g8");
+        ChessGame king = play("e2e4", "e7e5", "e1e2", "e8e7", "e2e1", "e7e8");
+        ChessGame pawns = play("e2e4", "e7e5");
+        assertEquals(new ChessGame().zobristKey(), knights.zobristKey());
+        assertEquals(pawns.getBoard(), king.getBoard());
+        assertNotEquals(pawns.zobristKey(), king.zobristKey());
+
+        // an en passant square only counts when a pawn can take on it
+        ChessGame noCapture = play("e2e4");
+        noCapture.getBoard().setEnPassantTgtSquare(null);
+        assertEquals(noCapture.zobristKey(), play("e2e4").zobristKey());
+        ChessGame capture = play("e2e4", "a7a6", "e4e5", "d7d5");
+        ChessGame noEnPassant = play("e2e4", "a7a6", "e4e5", "d7d5");
+        noEnPassant.getBoard().setEnPassantTgtSquare(null);
+        assertNotEquals(capture.zobristKey(), noEnPassant.zobristKey());
+    }
+
+    private static ChessGame play(String... moves) throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        for (String move : moves) {
+            ChessPosition start = ChessPosition.of(move.charAt(1) - '0', move.charAt(0) - 'a' + 1);
+            ChessPosition end = ChessPosition.of(move.charAt(3) - '0', move.charAt(2) - 'a' + 1);
+            ChessPiece.PieceType promotion = move.length() > 4 ? ChessPiece.PieceType.QUEEN : null;
+            game.makeMove(new ChessMove(start, end, promotion));
+        }
+        return game;
+    }
+}
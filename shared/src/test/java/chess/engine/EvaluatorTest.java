@@ -0,0 +1,58 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.PieceSquareTables;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The sums the board keeps through make and unmake match a full recompute, and the tables are color symmetric
+ */
+public class EvaluatorTest {
+
+    private static void walk(ChessGame game, int depth, int[] moves, int offset) {
+        assertEquals(Evaluator.evaluateFully(game.getBoard()),
+                game.getTeamTurn() == ChessGame.TeamColor.WHITE ? Evaluator.evaluate(game) : -Evaluator.evaluate(game),
+                game::toFen);
+        if (depth == 0) {
+            return;
+        }
+        int end = game.legalMoves(game.getTeamTurn(), moves, offset);
+        for (int i = offset; i < end; i++) {
+            game.doMove(moves[i]);
+            walk(game, depth - 1, moves, end);
+            game.undoMove();
+        }
+    }
+
+    @Test
+    void incrementalMatchesFullThroughMakeAndUnmake() {
+        // castling, en passant and promotions with and without capture all come up within three plies
+        for (String fen : new String[]{
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1"}) {
+            ChessGame game = ChessGame.fromFen(fen);
+            int before = Evaluator.evaluate(game);
+            walk(game, 3, new int[ChessGame.MAX_MOVES * 4], 0);
+            assertEquals(before, Evaluator.evaluate(game));
+        }
+    }
+
+    @Test
+    void mirroredPositionsScoreTheSame() {
+        assertEquals(0, Evaluator.evaluate(new ChessGame()));
+        ChessGame white = ChessGame.fromFen("r1bqkb1r/pppp1ppp/2n2n2/4p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 4 4");
+        ChessGame black = ChessGame.fromFen("rnbqk2r/pppp1ppp/5n2/2b1p3/4P3/2N2N2/PPPP1PPP/R1BQKB1R b KQkq - 4 4");
+        assertEquals(Evaluator.evaluate(white), Evaluator.evaluate(black));
+    }
+
+    @Test
+    void endgameTablesTakeOverAsMaterialComesOff() {
+        ChessGame game = ChessGame.fromFen("4k3/8/8/8/8/8/4P3/4K3 w - - 0 1");
+        assertEquals(0, game.getBoard().getGamePhase());
+        // with no pieces but pawns the endgame sum is the whole score
+        assertEquals(game.getBoard().getEndgameScore(), Evaluator.evaluate(game));
+        assertEquals(PieceSquareTables.MAX_PHASE, new ChessGame().getBoard().getGamePhase());
+    }
+}
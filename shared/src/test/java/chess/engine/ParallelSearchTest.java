@@ -0,0 +1,39 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Helper threads share the table without changing what the main thread finds
+ */
+public class ParallelSearchTest {
+
+    @Test
+    void findsTheSameMoves() {
+        try (ParallelSearch search = new ParallelSearch(3, new TranspositionTable(4))) {
+            SearchResult mate = search.search(ChessGame.fromFen("7k/8/8/8/8/8/1R6/R3K3 w - - 0 1"),
+                    SearchLimits.depth(5));
+            assertEquals(2, mate.mateIn());
+
+            SearchResult capture = search.search(ChessGame.fromFen("4k3/8/8/3q4/8/2N5/8/4K3 w - - 0 1"),
+                    SearchLimits.depth(4));
+            assertEquals(new ChessMove(ChessPosition.of(3, 3), ChessPosition.of(5, 4), null), capture.bestMove());
+        }
+    }
+
+    @Test
+    void helpersStopWithTheMainThread() {
+        try (ParallelSearch search = new ParallelSearch(4, new TranspositionTable(4))) {
+            long start = System.nanoTime();
+            SearchResult result = search.search(new ChessGame(), SearchLimits.time(200));
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            assertNotNull(result.bestMove());
+            assertTrue(millis < 2000, "took " + millis + " ms");
+            assertTrue(search.getTable().getHits() > 0);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The search finds forced mates and free material, and keeps to its limits
+ */
+public class SearchTest {
+
+    @Test
+    void findsMateInOne() {
+        // back rank mate, Ra8#
+        ChessGame game = ChessGame.fromFen("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1");
+        SearchResult result = new Search().search(game, SearchLimits.depth(3));
+        assertEquals(new ChessMove(ChessPosition.of(1, 1), ChessPosition.of(8, 1), null), result.bestMove());
+        assertEquals(1, result.mateIn());
+        assertEquals("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1", game.toFen());
+    }
+
+    @Test
+    void findsMateInTwo() {
+        // rook ladder: one rook cuts off the seventh rank, the other mates on the eighth
+        ChessGame game = ChessGame.fromFen("7k/8/8/8/8/8/1R6/R3K3 w - - 0 1");
+        SearchResult result = new Search().search(game, SearchLimits.depth(5));
+        assertTrue(result.isMate());
+        assertEquals(2, result.mateIn());
+        assertEquals(3, result.principalVariation().size());
+    }
+
+    @Test
+    void takesFreeMaterial() {
+        ChessGame game = ChessGame.fromFen("4k3/8/8/3q4/8/2N5/8/4K3 w - - 0 1");
+        SearchResult result = new Search().search(game, SearchLimits.depth(3));
+        assertEquals(new ChessMove(ChessPosition.of(3, 3), ChessPosition.of(5, 4), null), result.bestMove());
+        assertTrue(result.score() > 200);
+    }
+
+    @Test
+    void quiescenceSeesTheRecapture() {
+        // at depth 1 Qxd5 looks like a free pawn until exd5 is played out
+        ChessGame game = ChessGame.fromFen("4k3/8/4p3/3p4/8/8/8/3QK3 w - - 0 1");
+        SearchResult result = new Search().search(game, SearchLimits.depth(1));
+        assertNotEquals(new ChessMove(ChessPosition.of(1, 4), ChessPosition.of(5, 4), null), result.bestMove());
+        // queen against two pawns, not the queen against one pawn that Qxd5 would look like unanswered
+        int grabbed = -Evaluator.evaluate(ChessGame.fromFen("4k3/8/4p3/3Q4/8/8/8/4K3 b - - 0 1"));
+        assertEquals(807, result.score());
+        assertTrue(result.score() < grabbed, result.score() + " vs " + grabbed);
+    }
+
+    @Test
+    void keepsToTheTimeBudget() {
+        long start = System.nanoTime();
+        SearchResult result = new Search().search(new ChessGame(), SearchLimits.time(200));
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        assertNotNull(result.bestMove());
+        assertTrue(result.depth() >= 1);
+        assertTrue(millis < 2000, "took " + millis + " ms");
+        assertTrue(result.nodes() > 0 && result.nodesPerSecond() > 0);
+    }
+
+    @Test
+    void noMovesNoResult() {
+        ChessGame stalemate = ChessGame.fromFen("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1");
+        SearchResult result = new Search().search(stalemate, SearchLimits.depth(4));
+        assertNull(result.bestMove());
+        assertEquals(0, result.score());
+    }
+}
@@ -0,0 +1,39 @@
+package chess.engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.PackedMove;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Exchanges are played out least valuable attacker first, with pieces behind the first joining in
+ */
+public class StaticExchangeTest {
+
+    private static int see(String fen, int from, int to) {
+        ChessBoard board = ChessGame.fromFen(fen).getBoard();
+        return new StaticExchange().evaluate(board, PackedMove.encode(from, to) | PackedMove.CAPTURE);
+    }
+
+    @Test
+    void undefendedPieceIsWonOutright() {
+        // Nc3xd5
+        assertEquals(900, see("4k3/8/8/3q4/8/2N5/8/4K3 w - - 0 1", 18, 35));
+    }
+
+    @Test
+    void defendedPawnCostsTheQueen() {
+        // Qd1xd5 exd5
+        assertEquals(-800, see("4k3/8/4p3/3p4/8/8/8/3QK3 w - - 0 1", 3, 35));
+    }
+
+    @Test
+    void rookBehindJoinsTheExchange() {
+        // Rd2xd7 Rxd7 Rd1xd7 wins the pawn
+        assertEquals(100, see("3r3k/3p4/8/8/8/8/3R4/3R3K w - - 0 1", 11, 51));
+        // with nothing behind, the recapture wins the exchange back
+        assertEquals(-400, see("3r3k/3p4/8/8/8/8/3R4/7K w - - 0 1", 11, 51));
+    }
+}
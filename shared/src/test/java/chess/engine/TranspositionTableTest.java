@@ -0,0 +1,70 @@
+package chess.engine;
+
+import chess.ChessGame;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Entries come back as stored, buckets keep the deepest result, and the counters add up
+ */
+public class TranspositionTableTest {
+
+    @Test
+    void storeAndProbe() {
+        TranspositionTable table = new TranspositionTable(1);
+        assertEquals(1 << 20, table.sizeBytes());
+        assertEquals(0, table.probe(42L));
+
+        table.store(42L, 0x7ABCD, -1234, 7, TranspositionTable.LOWER_BOUND);
+        long entry = table.probe(42L);
+        assertEquals(0x7ABCD, TranspositionTable.move(entry));
+        assertEquals(-1234, TranspositionTable.score(entry));
+        assertEquals(7, TranspositionTable.depth(entry));
+        assertEquals(TranspositionTable.LOWER_BOUND, TranspositionTable.bound(entry));
+
+        assertEquals(2, table.getProbes());
+        assertEquals(1, table.getHits());
+        assertEquals(0.5, table.hitRate());
+    }
+
+    @Test
+    void deepResultsSurviveShallowOnes() {
+        TranspositionTable table = new TranspositionTable(1);
+        // keys one table length apart land in the same bucket
+        long deep = 5L;
+        long shallow = 5L + (1L << 15);
+        long newest = 5L + (2L << 15);
+
+        table.store(deep, 1, 10, 9, TranspositionTable.EXACT);
+        table.store(shallow, 2, 20, 3, TranspositionTable.EXACT);
+        table.store(newest, 3, 30, 2, TranspositionTable.EXACT);
+        assertEquals(9, TranspositionTable.depth(table.probe(deep)));
+        assertEquals(0, table.probe(shallow));
+        assertEquals(2, TranspositionTable.depth(table.probe(newest)));
+
+        // in the next search the old deep entry gives way
+        table.newSearch();
+        table.store(shallow, 2, 20, 3, TranspositionTable.EXACT);
+        assertEquals(0, table.probe(deep));
+        assertEquals(3, TranspositionTable.depth(table.probe(shallow)));
+    }
+
+    @Test
+    void mateScoresAreStoredFromTheirPosition() {
+        int mateInThreeFromRoot = Search.MATE - 5;
+        int stored = TranspositionTable.toStored(mateInThreeFromRoot, 2);
+        assertEquals(Search.MATE - 3, stored);
+        assertEquals(Search.MATE - 7, TranspositionTable.fromStored(stored, 4));
+        assertEquals(150, TranspositionTable.fromStored(TranspositionTable.toStored(150, 9), 3));
+    }
+
+    @Test
+    void searchFillsTheTable() {
+        TranspositionTable table = new TranspositionTable(1);
+        Search search = new Search(table);
+        search.search(new ChessGame(), SearchLimits.depth(5));
+        assertTrue(table.getHits() > 0);
+        assertTrue(table.fillPermille() > 0);
+    }
+}
@@ -0,0 +1,171 @@
+package chess.pgn;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SAN both ways, and PGN games surviving a trip through the writer and the reader
+ */
+public class PgnTest {
+
+    private static final String OPERA_GAME = """
+            [Event "Paris"]
+            [Site "Paris FRA"]
+            [Date "1858.??.??"]
+            [Round "?"]
+            [White "Paul Morphy"]
+            [Black "Duke Karl / Count Isouard"]
+            [Result "1-0"]
+
+            1. e4 e5 2. Nf3 d6 3. d4 Bg4 {This is a weak move already.} 4. dxe5 Bxf3
+            5. Qxf3 dxe5 6. Bc4 Nf6 7. Qb3 Qe7 8. Nc3 (8. Qxb7 Qb4+ 9. Qxb4 Bxb4+) 8... c6
+            9. Bg5 $1 b5 10. Nxb5 cxb5 11. Bxb5+ Nbd7 12. O-O-O Rd8 13. Rxd7 Rxd7 14. Rd1 Qe6
+            15. Bxd7+ Nxd7 16. Qb8+ Nxb8 17. Rd8# 1-0
+            """;
+
+    @Test
+    void disambiguation() {
+        // knights on b1 and f3 both reach d2, rooks on a1 and a5 both reach a3
+        ChessGame game = ChessGame.fromFen("4k3/8/8/R7/8/5N2/8/RN2K3 w - - 0 1");
+        assertEquals("Nbd2", San.encode(game, San.decode(game, "Nbd2")));
+        assertEquals("Nfd2", San.encode(game, San.decode(game, "Nfd2")));
+        assertEquals("R1a3", San.encode(game, San.decode(game, "R1a3")));
+        assertEquals("R5a3", San.encode(game, San.decode(game, "R5a3")));
+        assertThrows(IllegalArgumentException.class, () -> San.decode(game, "Nd2"));
+        assertThrows(IllegalArgumentException.class, () -> San.decode(game, "Ra3"));
+
+        // three queens reaching e1 need both file and rank for one of them
+        ChessGame queens = ChessGame.fromFen("1k6/8/8/8/4Q2Q/8/8/K6Q w - - 0 1");
+        assertEquals("Qh4e1", San.encode(queens, San.decode(queens, "Qh4e1")));
+    }
+
+    @Test
+    void specialMoves() {
+        ChessGame game = ChessGame.fromFen("r3k2r/1P6/8/3pP3/8/8/8/R3K2R w KQkq d6 0 1");
+        assertEquals("O-O", San.encode(game, San.decode(game, "0-0")));
+        assertEquals("O-O-O", San.encode(game, San.decode(game, "O-O-O")));
+        assertEquals("exd6", San.encode(game, San.decode(game, "exd6")));
+        assertEquals("bxa8=Q+", San.encode(game, San.decode(game, "bxa8Q")));
+        assertEquals("b8=N", San.encode(game, San.decode(game, "b8=N")));
+        assertThrows(IllegalArgumentException.class, () -> San.decode(game, "b8"));
+    }
+
+    @Test
+    void encodingLeavesTheGameUntouched() {
+        // the move is tried on a copy, so the board never changes, not even for a moment
+        ChessGame game = ChessGame.fromFen("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1");
+        long version = game.getBoard().getVersion();
+        assertEquals("Ra8#", San.encode(game, San.decode(game, "Ra8")));
+        assertEquals(version, game.getBoard().getVersion());
+        assertEquals("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1", game.toFen());
+    }
+
+    @Test
+    void encodingFromSeveralThreadsAtOnce() throws Exception {
+        ChessGame game = ChessGame.fromFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        List<ChessMove> moves = game.legalMoveStream(game.getTeamTurn()).toList();
+        List<String> expected = new ArrayList<>();
+        for (ChessMove move : moves) {
+            expected.add(San.encode(game, move));
+        }
+
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                results.add(threads.submit(() -> {
+                    for (int round = 0; round < 500; round++) {
+                        for (int i = 0; i < moves.size(); i++) {
+                            if (!expected.get(i).equals(San.encode(game, moves.get(i)))) {
+                                return false;
+                            }
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            threads.shutdown();
+        }
+        assertEquals("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", game.toFen());
+    }
+
+    @Test
+    void readGame() {
+        List<PgnGame> games = new PgnReader().parse(OPERA_GAME);
+        assertEquals(1, games.size());
+
+        PgnGame game = games.get(0);
+        assertEquals("Paul Morphy", game.getTag("White"));
+        assertEquals("1-0", game.getResult());
+        assertEquals(33, game.getMoves().size());
+        assertEquals(ChessGame.GameStatus.CHECKMATE, game.replay().status());
+    }
+
+    @Test
+    void writeThenRead() {
+        PgnGame game = new PgnReader().parse(OPERA_GAME).get(0);
+        String written = PgnWriter.write(game);
+        String movetext = written.replace('\n', ' ');
+        assertTrue(movetext.contains("12. O-O-O Rd8"));
+        assertTrue(movetext.contains("17. Rd8# 1-0"));
+        assertTrue(written.lines().allMatch(line -> line.length() <= 80));
+
+        PgnGame read = new PgnReader().parse(written).get(0);
+        assertEquals(game.getTags(), read.getTags());
+        assertEquals(game.getMoves(), read.getMoves());
+    }
+
+    @Test
+    void startFromFen() {
+        PgnGame game = new PgnGame();
+        game.setTag("SetUp", "1");
+        game.setTag("FEN", "4k3/8/8/8/8/8/4p3/K7 b - - 0 40");
+        game.getMoves().add(San.toMove(game.startingPosition(), "e1=Q+"));
+        game.setResult("0-1");
+
+        String written = PgnWriter.write(game);
+        assertTrue(written.contains("40... e1=Q+ 0-1"));
+        assertEquals(game.getMoves(), new PgnReader().parse(written).get(0).getMoves());
+    }
+
+    @Test
+    void readFileInOrder(@TempDir Path dir) throws IOException {
+        // enough games for several batches, each one move longer than the last
+        PgnGame source = new PgnReader().parse(OPERA_GAME).get(0);
+        StringBuilder text = new StringBuilder();
+        int count = 10_000;
+        for (int i = 0; i < count; i++) {
+            PgnGame game = new PgnGame();
+            game.setTag("Round", Integer.toString(i));
+            List<ChessMove> moves = source.getMoves().subList(0, i % source.getMoves().size());
+            game.getMoves().addAll(moves);
+            PgnWriter.write(game, text);
+        }
+        Path file = dir.resolve("games.pgn");
+        Files.writeString(file, text);
+
+        List<PgnGame> games = new PgnReader().readAll(file);
+        assertEquals(count, games.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(Integer.toString(i), games.get(i).getTag("Round"));
+            assertEquals(i % source.getMoves().size(), games.get(i).getMoves().size());
+        }
+    }
+}